@@ -0,0 +1,74 @@
+package dev.nicotopia.wms.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import dev.nicotopia.wms.Game;
+import dev.nicotopia.wms.Game.Color;
+import dev.nicotopia.wms.Game.Direction;
+import dev.nicotopia.wms.Game.SplitType;
+
+public class BoardCorpus {
+    public enum Size {
+        SMALL(6, 5), MEDIUM(12, 10), LARGE(25, 20);
+
+        private final int width;
+        private final int height;
+
+        private Size(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public enum Difficulty {
+        EASY(5, 2), MEDIUM(10, 3), HARD(20, 3);
+
+        private final int numberedPercentage;
+        private final int maxNumber;
+
+        private Difficulty(int numberedPercentage, int maxNumber) {
+            this.numberedPercentage = numberedPercentage;
+            this.maxNumber = maxNumber;
+        }
+    }
+
+    public static final int BOARDS_PER_GROUP = 8;
+
+    private BoardCorpus() {
+    }
+
+    public static List<Game> getBoards(Size size, Difficulty difficulty) {
+        List<Game> boards = new ArrayList<>();
+        for (int i = 0; i < BOARDS_PER_GROUP; ++i) {
+            boards.add(createBoard(size, difficulty, new Random(31L * (31L * size.ordinal() + difficulty.ordinal()) + i)));
+        }
+        return boards;
+    }
+
+    private static Game createBoard(Size size, Difficulty difficulty, Random random) {
+        Game game = new Game(size.width, size.height);
+        game.setSplitType(SplitType.values()[random.nextInt(SplitType.values().length)]);
+        for (Direction dir : Direction.values()) {
+            int length = dir == Direction.LEFT || dir == Direction.RIGHT ? size.height : size.width;
+            game.setSplit(dir, 1 + random.nextInt(length - 1));
+        }
+        for (int y = 0; y < size.height; ++y) {
+            for (int x = 0; x < size.width; ++x) {
+                game.setCell(x, y, random.nextInt(16) == 0 ? Color.NONE : game.getTargetColor(x, y), 0);
+            }
+        }
+        for (int i = 0; i < size.width * size.height * difficulty.numberedPercentage / 100; ++i) {
+            int x = random.nextInt(size.width);
+            int y = random.nextInt(size.height);
+            if (game.getColor(x, y) != Color.NONE && game.getNumber(x, y) == 0) {
+                int number = 1 + random.nextInt(difficulty.maxNumber);
+                for (int j = 0; j < number; ++j) {
+                    game.reverseWave(x, y, Direction.values()[random.nextInt(Direction.values().length)]);
+                }
+            }
+        }
+        return game;
+    }
+}
@@ -0,0 +1,80 @@
+package dev.nicotopia.wms.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import dev.nicotopia.wms.Game;
+import dev.nicotopia.wms.Game.Color;
+import dev.nicotopia.wms.Game.Direction;
+import dev.nicotopia.wms.Game.SplitType;
+import dev.nicotopia.wms.Solver;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+    @Param({ "SMALL", "LARGE" })
+    public BoardCorpus.Size size;
+
+    @Param
+    public SplitType splitType;
+
+    private Game game;
+    private int waveX;
+    private int waveY;
+
+    @Setup
+    public void setUp() {
+        this.game = BoardCorpus.getBoards(this.size, BoardCorpus.Difficulty.MEDIUM).get(0).copy();
+        this.game.setSplitType(this.splitType);
+        this.waveX = this.game.getWidth() / 2;
+        this.waveY = this.game.getHeight() / 2;
+        this.game.setCell(this.waveX, this.waveY, Color.COLOR_0, 4);
+    }
+
+    @Benchmark
+    public boolean waveAndReverseWave() {
+        boolean waved = this.game.wave(this.waveX, this.waveY, Direction.RIGHT);
+        this.game.reverseWave(this.waveX, this.waveY, Direction.RIGHT);
+        return waved;
+    }
+
+    @Benchmark
+    public boolean isSolved() {
+        return this.game.isSolved();
+    }
+
+    @Benchmark
+    public void isCellCorrect(Blackhole blackhole) {
+        for (int y = 0; y < this.game.getHeight(); ++y) {
+            for (int x = 0; x < this.game.getWidth(); ++x) {
+                blackhole.consume(this.game.isCellCorrect(x, y));
+            }
+        }
+    }
+
+    @Benchmark
+    public Game copy() {
+        return this.game.copy();
+    }
+
+    @Benchmark
+    public Solver createSolver() {
+        return new Solver(this.game);
+    }
+}
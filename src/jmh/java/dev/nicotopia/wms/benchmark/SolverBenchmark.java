@@ -0,0 +1,60 @@
+package dev.nicotopia.wms.benchmark;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.nicotopia.wms.Game;
+import dev.nicotopia.wms.Solver;
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolverBenchmark {
+    private static final Duration BOARD_TIMEOUT = Duration.ofSeconds(10);
+
+    @Param
+    public BoardCorpus.Size size;
+
+    @Param
+    public BoardCorpus.Difficulty difficulty;
+
+    @Param
+    public Solver.Strategy strategy;
+
+    private List<Game> boards;
+
+    @Setup
+    public void setUp() {
+        this.boards = BoardCorpus.getBoards(this.size, this.difficulty);
+    }
+
+    @Benchmark
+    public int solveCorpus() {
+        int solved = 0;
+        for (Game board : this.boards) {
+            Solver solver = new Solver(board);
+            solver.setStrategy(this.strategy);
+            solver.setTimeout(BOARD_TIMEOUT);
+            if (solver.solve()) {
+                ++solved;
+            }
+        }
+        return solved;
+    }
+}
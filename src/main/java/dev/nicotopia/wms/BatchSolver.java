@@ -0,0 +1,329 @@
+package dev.nicotopia.wms;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class BatchSolver implements AutoCloseable {
+    public enum Order {
+        COMPLETION, INPUT
+    }
+
+    public record Result(int index, Game game, Solution solution, RuntimeException error) {
+        public Solver.Outcome getOutcome() {
+            return this.solution == null ? null : this.solution.getOutcome();
+        }
+    }
+
+    private record Settings(Solver.Strategy strategy, Solver.Objective objective,
+            BranchingHeuristic branchingHeuristic, Duration timeout, long nodeBudget, long transpositionTableBytes,
+            TranspositionTable.ReplacementPolicy replacementPolicy, SolutionCache solutionCache,
+            boolean instrumented) {
+    }
+
+    // Only transposition tables are pooled, as they are the one allocation of a solve whose size does not depend on the
+    // game. Wave tables are already shared per geometry by WaveTable.get, and each game's GameState and cell domains
+    // are built from its own numbers, so they are allocated again for every game.
+    private record PooledTable(long bytes, TranspositionTable table) {
+    }
+
+    private final int threads;
+    private final ExecutorService executor;
+    private final Queue<PooledTable> tables = new ConcurrentLinkedQueue<>();
+    private Order order = Order.COMPLETION;
+    private int maxPending;
+    private Solver.Strategy strategy = Solver.Strategy.LINEAR_ALGEBRA;
+    private Solver.Objective objective = Solver.Objective.ANY;
+    private BranchingHeuristic branchingHeuristic = BranchingHeuristics.MOST_CONSTRAINED_CELL;
+    private Duration timeout = Duration.ZERO;
+    private long nodeBudget = 0;
+    private long transpositionTableBytes = 1L << 22;
+    private TranspositionTable.ReplacementPolicy replacementPolicy = TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED;
+    private SolutionCache solutionCache;
+    private boolean instrumented;
+
+    public BatchSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchSolver(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.threads = threads;
+        this.maxPending = 2 * threads;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "batch-solver-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getThreads() {
+        return this.threads;
+    }
+
+    public Order getOrder() {
+        return this.order;
+    }
+
+    public void setOrder(Order order) {
+        this.order = order;
+    }
+
+    public int getMaxPending() {
+        return this.maxPending;
+    }
+
+    public void setMaxPending(int maxPending) {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("Maximum pending count must be positive");
+        }
+        this.maxPending = maxPending;
+    }
+
+    public Solver.Strategy getStrategy() {
+        return this.strategy;
+    }
+
+    public void setStrategy(Solver.Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public Solver.Objective getObjective() {
+        return this.objective;
+    }
+
+    public void setObjective(Solver.Objective objective) {
+        this.objective = objective;
+    }
+
+    public BranchingHeuristic getBranchingHeuristic() {
+        return this.branchingHeuristic;
+    }
+
+    public void setBranchingHeuristic(BranchingHeuristic branchingHeuristic) {
+        this.branchingHeuristic = branchingHeuristic;
+    }
+
+    public Duration getTimeout() {
+        return this.timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Timeout must not be negative");
+        }
+        this.timeout = timeout;
+    }
+
+    public long getNodeBudget() {
+        return this.nodeBudget;
+    }
+
+    public void setNodeBudget(long nodeBudget) {
+        if (nodeBudget < 0) {
+            throw new IllegalArgumentException("Node budget must not be negative");
+        }
+        this.nodeBudget = nodeBudget;
+    }
+
+    public long getTranspositionTableBytes() {
+        return this.transpositionTableBytes;
+    }
+
+    public void setTranspositionTableBytes(long transpositionTableBytes) {
+        if (transpositionTableBytes < 0) {
+            throw new IllegalArgumentException("Transposition table size must not be negative");
+        }
+        this.transpositionTableBytes = transpositionTableBytes;
+    }
+
+    public TranspositionTable.ReplacementPolicy getReplacementPolicy() {
+        return this.replacementPolicy;
+    }
+
+    public void setReplacementPolicy(TranspositionTable.ReplacementPolicy replacementPolicy) {
+        this.replacementPolicy = replacementPolicy;
+    }
+
+    public SolutionCache getSolutionCache() {
+        return this.solutionCache;
+    }
+
+    public void setSolutionCache(SolutionCache solutionCache) {
+        this.solutionCache = solutionCache;
+    }
+
+    public boolean isInstrumented() {
+        return this.instrumented;
+    }
+
+    public void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+    }
+
+    public Stream<Result> solve(Stream<Game> games) {
+        ResultIterator results = new ResultIterator(games.iterator());
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(results, Spliterator.NONNULL | Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    results.cancel();
+                    games.close();
+                });
+    }
+
+    public Iterator<Result> solve(Iterator<Game> games) {
+        return new ResultIterator(games);
+    }
+
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+    // A game that fails to solve is reported in its result, so it does not end the batch.
+    private Result solve(int index, Game game, ResultIterator results) {
+        try {
+            return this.solveGame(index, game, results);
+        } catch (RuntimeException ex) {
+            return new Result(index, game, null, ex);
+        }
+    }
+
+    private Result solveGame(int index, Game game, ResultIterator results) {
+        Settings settings = results.settings;
+        // Cached solutions need not be of least cost, but those found for an objective serve any later lookup.
+        if (settings.solutionCache != null && settings.objective == Solver.Objective.ANY) {
+            Optional<Solution> cached = settings.solutionCache.get(game);
+            if (cached.isPresent()) {
+                return new Result(index, game, cached.get(), null);
+            }
+        }
+        Solver solver = new Solver(game);
+        solver.setStrategy(settings.strategy);
+        solver.setObjective(settings.objective);
+        solver.setBranchingHeuristic(settings.branchingHeuristic);
+        solver.setTimeout(settings.timeout);
+        solver.setNodeBudget(settings.nodeBudget);
+        solver.setInstrumented(settings.instrumented);
+        results.running.add(solver);
+        if (results.cancelled) {
+            solver.cancel();
+        }
+        PooledTable table = null;
+        try {
+            if (settings.transpositionTableBytes != 0) {
+                table = this.takeTable(settings);
+            }
+            solver.solve(table == null ? null : table.table);
+        } finally {
+            results.running.remove(solver);
+            if (table != null) {
+                this.tables.offer(table);
+            }
+        }
+        if (settings.solutionCache != null && (solver.getOutcome() == Solver.Outcome.SOLVED
+                || solver.getOutcome() == Solver.Outcome.UNSOLVABLE)) {
+            settings.solutionCache.put(game, solver);
+        }
+        return new Result(index, game, solver, null);
+    }
+
+    private PooledTable takeTable(Settings settings) {
+        for (PooledTable table = this.tables.poll(); table != null; table = this.tables.poll()) {
+            if (table.bytes == settings.transpositionTableBytes
+                    && table.table.getReplacementPolicy() == settings.replacementPolicy) {
+                table.table.clear();
+                return table;
+            }
+        }
+        return new PooledTable(settings.transpositionTableBytes,
+                new TranspositionTable(settings.transpositionTableBytes, settings.replacementPolicy));
+    }
+
+    private class ResultIterator implements Iterator<Result> {
+        private final Iterator<Game> games;
+        private final Settings settings;
+        private final Order order;
+        private final int maxPending;
+        private final CompletionService<Result> completionService;
+        private final Queue<Future<Result>> pending = new ArrayDeque<>();
+        private final Set<Solver> running = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+        private int submitted;
+        private int returned;
+
+        public ResultIterator(Iterator<Game> games) {
+            this.games = games;
+            this.settings = new Settings(BatchSolver.this.strategy, BatchSolver.this.objective,
+                    BatchSolver.this.branchingHeuristic, BatchSolver.this.timeout, BatchSolver.this.nodeBudget,
+                    BatchSolver.this.transpositionTableBytes, BatchSolver.this.replacementPolicy,
+                    BatchSolver.this.solutionCache, BatchSolver.this.instrumented);
+            this.order = BatchSolver.this.order;
+            this.maxPending = BatchSolver.this.maxPending;
+            this.completionService = new ExecutorCompletionService<>(BatchSolver.this.executor);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!this.cancelled && this.submitted - this.returned < this.maxPending && this.games.hasNext()) {
+                int index = this.submitted++;
+                Game game = this.games.next();
+                Future<Result> future = this.completionService
+                        .submit(() -> BatchSolver.this.solve(index, game, this));
+                if (this.order == Order.INPUT) {
+                    this.pending.add(future);
+                }
+            }
+            return this.returned < this.submitted;
+        }
+
+        @Override
+        public Result next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                Future<Result> future;
+                if (this.order == Order.INPUT) {
+                    future = this.pending.poll();
+                    // Keep the completion service's queue from growing; its futures are never taken otherwise.
+                    this.completionService.take();
+                } else {
+                    future = this.completionService.take();
+                }
+                ++this.returned;
+                return future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a result", ex);
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Solving failed", ex.getCause());
+            }
+        }
+
+        public void cancel() {
+            this.cancelled = true;
+            this.running.forEach(Solver::cancel);
+        }
+    }
+}
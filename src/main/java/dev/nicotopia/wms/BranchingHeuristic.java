@@ -0,0 +1,5 @@
+package dev.nicotopia.wms;
+
+public interface BranchingHeuristic {
+    public int selectCell(GameState state, CellDomain domains[]);
+}
@@ -0,0 +1,57 @@
+package dev.nicotopia.wms;
+
+public enum BranchingHeuristics implements BranchingHeuristic {
+    ROW_MAJOR {
+        @Override
+        public int selectCell(GameState state, CellDomain domains[]) {
+            return state.nextWaveable(0);
+        }
+    },
+    FEWEST_MOVES {
+        @Override
+        public int selectCell(GameState state, CellDomain domains[]) {
+            int best = -1;
+            for (int cell = state.nextWaveable(0); cell != -1; cell = state.nextWaveable(cell + 1)) {
+                if (best == -1 || domains[cell].size() < domains[best].size()) {
+                    best = cell;
+                }
+            }
+            return best;
+        }
+    },
+    MOST_CONSTRAINED_CELL {
+        @Override
+        public int selectCell(GameState state, CellDomain domains[]) {
+            int target = -1;
+            int targetReach = Integer.MAX_VALUE;
+            for (int cell = state.nextWrong(0); cell != -1 && targetReach != 1; cell = state.nextWrong(cell + 1)) {
+                int reach = state.getReachCount(cell) + (state.canWave(cell) ? 1 : 0);
+                if (reach < targetReach) {
+                    target = cell;
+                    targetReach = reach;
+                }
+            }
+            if (target == -1) {
+                return FEWEST_MOVES.selectCell(state, domains);
+            }
+            int best = state.canWave(target) ? target : -1;
+            int width = state.getWidth();
+            int x = target % width;
+            int y = target / width;
+            for (int x1 = 0; x1 < width; ++x1) {
+                best = this.better(state, domains, best, y * width + x1, Math.abs(x1 - x));
+            }
+            for (int y1 = 0; y1 < state.getHeight(); ++y1) {
+                best = this.better(state, domains, best, y1 * width + x, Math.abs(y1 - y));
+            }
+            return best;
+        }
+
+        private int better(GameState state, CellDomain domains[], int best, int cell, int distance) {
+            if (distance == 0 || !state.canWave(cell) || state.getNumber(cell) < distance) {
+                return best;
+            }
+            return best == -1 || domains[cell].size() < domains[best].size() ? cell : best;
+        }
+    };
+}
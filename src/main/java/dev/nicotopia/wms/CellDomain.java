@@ -0,0 +1,144 @@
+package dev.nicotopia.wms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import dev.nicotopia.wms.Game.Direction;
+
+public class CellDomain {
+    public static final int MAX_SIZE = 1 << 18;
+
+    private static final Direction DIRECTIONS[] = Direction.values();
+
+    private record Entry(long[] mask, long directions, int waveCount) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry e && Arrays.equals(this.mask, e.mask);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.mask);
+        }
+    }
+
+    private final int cell;
+    private final int number;
+    private final int words;
+    private final long masks[];
+    private final long directions[];
+    private final long hashes[];
+    private final byte waveCounts[];
+
+    public CellDomain(GameState state, int cell) {
+        this(state, cell, enumerate(state, cell));
+    }
+
+    private CellDomain(GameState state, int cell, Set<Entry> all) {
+        if (all == null) {
+            throw new IllegalArgumentException("Number " + state.getNumber(cell) + " of cell " + cell
+                    + " has too many distinct wave patterns");
+        }
+        this.cell = cell;
+        this.number = state.getNumber(cell);
+        this.words = state.getWaveTable().getWordCount();
+        this.masks = new long[all.size() * this.words];
+        this.directions = new long[all.size()];
+        this.hashes = new long[all.size()];
+        this.waveCounts = new byte[all.size()];
+        int i = 0;
+        for (Entry e : all) {
+            System.arraycopy(e.mask, 0, this.masks, i * this.words, this.words);
+            this.directions[i] = e.directions;
+            this.hashes[i] = Zobrist.mask(e.mask, 0, this.words);
+            this.waveCounts[i++] = (byte) e.waveCount;
+        }
+    }
+
+    // The domain of cell, or null if its wave patterns are too many to enumerate. The search then sends that cell's
+    // waves one by one instead.
+    static CellDomain tryCreate(GameState state, int cell) {
+        Set<Entry> all = enumerate(state, cell);
+        return all == null ? null : new CellDomain(state, cell, all);
+    }
+
+    private static Set<Entry> enumerate(GameState state, int cell) {
+        int number = state.getNumber(cell);
+        if (Long.SIZE / 2 < number) {
+            return null;
+        }
+        WaveTable table = state.getWaveTable();
+        int words = table.getWordCount();
+        Set<Entry> all = new LinkedHashSet<>();
+        Entry empty = new Entry(new long[words], 0, 0);
+        all.add(empty);
+        List<Entry> level = List.of(empty);
+        for (int k = 0; k < number; ++k) {
+            Set<Entry> next = new LinkedHashSet<>();
+            for (Entry e : level) {
+                for (Direction dir : DIRECTIONS) {
+                    if (!table.isBlocked(cell, dir)) {
+                        long mask[] = Arrays.copyOf(e.mask, words);
+                        int offset = table.getOffset(cell, dir, number - k);
+                        for (int i = 0; i < words; ++i) {
+                            mask[i] ^= table.getMasks()[offset + i] & ~state.getNoneMask(i);
+                        }
+                        next.add(new Entry(mask, e.directions | (long) dir.ordinal() << 2 * k, k + 1));
+                    }
+                }
+                if (MAX_SIZE < next.size()) {
+                    return null;
+                }
+            }
+            level = new ArrayList<>(next);
+            all.addAll(level);
+            if (MAX_SIZE < all.size()) {
+                return null;
+            }
+        }
+        return all;
+    }
+
+    public int getCell() {
+        return this.cell;
+    }
+
+    public int getNumber() {
+        return this.number;
+    }
+
+    public int size() {
+        return this.directions.length;
+    }
+
+    public long[] getMasks() {
+        return this.masks;
+    }
+
+    public int getMaskOffset(int entry) {
+        return entry * this.words;
+    }
+
+    public long getHash(int entry) {
+        return this.hashes[entry];
+    }
+
+    public int getWaveCount(int entry) {
+        return this.waveCounts[entry];
+    }
+
+    public Direction getDirection(int entry, int wave) {
+        return DIRECTIONS[(int) (this.directions[entry] >>> 2 * wave) & 3];
+    }
+
+    public List<Direction> getDirections(int entry) {
+        List<Direction> dirs = new ArrayList<>(this.getWaveCount(entry));
+        for (int wave = 0; wave < this.getWaveCount(entry); ++wave) {
+            dirs.add(this.getDirection(entry, wave));
+        }
+        return dirs;
+    }
+}
@@ -0,0 +1,91 @@
+package dev.nicotopia.wms;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Splits a game state into groups of cells that no wave can cross between: cells are connected to every cell a
+// waveable cell among them can reach. Groups without wrong cells are left out as they are solved already, unless
+// solved groups are asked for as well.
+final class Components {
+    private Components() {
+    }
+
+    static List<long[]> find(GameState state) {
+        return find(state, false);
+    }
+
+    static List<long[]> find(GameState state, boolean solvedGroups) {
+        int parents[] = new int[state.getCellCount()];
+        for (int cell = 0; cell < parents.length; ++cell) {
+            parents[cell] = cell;
+        }
+        int width = state.getWidth();
+        int height = state.getHeight();
+        for (int cell = state.nextWaveable(0); cell != -1; cell = state.nextWaveable(cell + 1)) {
+            int x = cell % width;
+            int y = cell / width;
+            int number = state.getNumber(cell);
+            for (int distance = 1; distance <= number; ++distance) {
+                if (distance <= x) {
+                    connect(state, parents, cell, cell - distance);
+                }
+                if (distance < width - x) {
+                    connect(state, parents, cell, cell + distance);
+                }
+                if (distance <= y) {
+                    connect(state, parents, cell, cell - distance * width);
+                }
+                if (distance < height - y) {
+                    connect(state, parents, cell, cell + distance * width);
+                }
+            }
+        }
+        Map<Integer, long[]> components = new LinkedHashMap<>();
+        for (int cell = state.nextWrong(0); cell != -1; cell = state.nextWrong(cell + 1)) {
+            components.putIfAbsent(find(parents, cell), new long[GameState.wordCount(parents.length)]);
+        }
+        for (int cell = solvedGroups ? state.nextWaveable(0) : -1; cell != -1; cell = state.nextWaveable(cell + 1)) {
+            components.putIfAbsent(find(parents, cell), new long[GameState.wordCount(parents.length)]);
+        }
+        for (int cell = 0; cell < parents.length; ++cell) {
+            long component[] = components.get(find(parents, cell));
+            if (component != null && !state.isNone(cell)) {
+                component[cell >>> 6] |= 1L << cell;
+            }
+        }
+        List<long[]> result = new ArrayList<>(components.values());
+        result.sort(Comparator.comparingInt(component -> waveableCount(state, component)));
+        return result;
+    }
+
+    private static int waveableCount(GameState state, long component[]) {
+        int count = 0;
+        for (int cell = GameState.nextSetBit(component, 0); cell != -1; cell = GameState.nextSetBit(component,
+                cell + 1)) {
+            if (state.canWave(cell)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private static void connect(GameState state, int parents[], int cell, int other) {
+        if (!state.isNone(other)) {
+            union(parents, cell, other);
+        }
+    }
+
+    private static int find(int parents[], int cell) {
+        while (parents[cell] != cell) {
+            cell = parents[cell] = parents[parents[cell]];
+        }
+        return cell;
+    }
+
+    private static void union(int parents[], int a, int b) {
+        parents[find(parents, a)] = find(parents, b);
+    }
+}
@@ -1,17 +1,32 @@
 package dev.nicotopia.wms;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.EnumMap;
-import java.util.HashSet;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Game {
     public interface CellListener {
         public void onCellChange(int x, int y);
+
+        // Receives the cells changed by one update, indexed by y * width + x.
+        public default void onCellsChange(Game game, BitSet cells) {
+            for (int cell = cells.nextSetBit(0); cell != -1; cell = cells.nextSetBit(cell + 1)) {
+                this.onCellChange(cell % game.getWidth(), cell / game.getWidth());
+            }
+        }
     }
 
     public interface SplitListener {
         public void onSplitChange(Direction dir);
+
+        // Receives the sides changed by one update.
+        public default void onSplitsChange(Set<Direction> dirs) {
+            dirs.forEach(this::onSplitChange);
+        }
     }
 
     public enum Color {
@@ -26,13 +41,50 @@ public class Game {
         NONE, HOR, VERT, HOR_AND_VERT, VERT_AND_HOR, TOP_LEFT, TOP_RIGHT, BOTTOM_RIGHT, BOTTOM_LEFT
     }
 
+    // An immutable copy of a game's state. Cells are stored row by row so that restoring them is one array copy per
+    // row.
+    public static final class Snapshot {
+        private final int width;
+        private final int height;
+        private final Color colors[];
+        private final int numbers[];
+        private final SplitType splitType;
+        private final int splits[];
+        private final Color topLeftBorderColor;
+
+        private Snapshot(Game game) {
+            this.width = game.getWidth();
+            this.height = game.getHeight();
+            this.colors = new Color[this.width * this.height];
+            this.numbers = new int[this.width * this.height];
+            for (int y = 0; y < this.height; ++y) {
+                System.arraycopy(game.colors[y], 0, this.colors, y * this.width, this.width);
+                System.arraycopy(game.numbers[y], 0, this.numbers, y * this.width, this.width);
+            }
+            this.splitType = game.splitType;
+            this.splits = Arrays.stream(Direction.values()).mapToInt(game::getSplit).toArray();
+            this.topLeftBorderColor = game.topLeftBorderColor;
+        }
+
+        public int getWidth() {
+            return this.width;
+        }
+
+        public int getHeight() {
+            return this.height;
+        }
+    }
+
     private final Color colors[][];
     private final int numbers[][];
     private SplitType splitType;
     private final EnumMap<Direction, Integer> splits = new EnumMap<>(Direction.class);
-    private final Set<CellListener> cellListeners = new HashSet<>();
-    private final Set<SplitListener> splitListeners = new HashSet<>();
+    private final List<CellListener> cellListeners = new CopyOnWriteArrayList<>();
+    private final List<SplitListener> splitListeners = new CopyOnWriteArrayList<>();
     private Color topLeftBorderColor = Color.COLOR_0;
+    private int updateDepth;
+    private final BitSet changedCells = new BitSet();
+    private final Set<Direction> changedSplits = EnumSet.noneOf(Direction.class);
 
     public Game(int width, int height) {
         this.colors = new Color[height][width];
@@ -41,6 +93,19 @@ public class Game {
         Arrays.stream(this.colors).forEach(a -> Arrays.fill(a, Color.COLOR_1));
     }
 
+    // Copies the state of other without its listeners.
+    public Game(Game other) {
+        this.colors = new Color[other.getHeight()][];
+        this.numbers = new int[other.getHeight()][];
+        for (int y = 0; y < other.getHeight(); ++y) {
+            this.colors[y] = other.colors[y].clone();
+            this.numbers[y] = other.numbers[y].clone();
+        }
+        this.splitType = other.splitType;
+        this.splits.putAll(other.splits);
+        this.topLeftBorderColor = other.topLeftBorderColor;
+    }
+
     public int getWidth() {
         return this.colors[0].length;
     }
@@ -54,8 +119,10 @@ public class Game {
     }
 
     public void switchTopLeftBorderColor() {
+        this.beginUpdate();
         this.topLeftBorderColor = this.topLeftBorderColor == Color.COLOR_0 ? Color.COLOR_1 : Color.COLOR_0;
         Arrays.stream(Direction.values()).forEach(this::notifySplitListeners);
+        this.endUpdate();
     }
 
     public Color getBorderColor(Direction dir, int pos) {
@@ -114,15 +181,18 @@ public class Game {
     }
 
     public void setSplitType(SplitType splitType) {
+        this.beginUpdate();
         this.splitType = splitType;
         this.splits.put(Direction.LEFT, this.getWidth() / 2);
         this.splits.put(Direction.UP, this.getHeight() / 2);
         this.splits.put(Direction.RIGHT, this.getWidth() / 2);
         this.splits.put(Direction.DOWN, this.getHeight() / 2);
         Arrays.stream(Direction.values()).forEach(this::notifySplitListeners);
+        this.endUpdate();
     }
 
     public void setSplit(Direction dir, int split) {
+        this.beginUpdate();
         if ((this.splitType == SplitType.HOR || this.splitType == SplitType.HOR_AND_VERT)
                 && (dir == Direction.LEFT || dir == Direction.RIGHT)) {
             this.setSingleSplit(Direction.LEFT, split);
@@ -134,6 +204,7 @@ public class Game {
         } else if (this.splitType != SplitType.NONE) {
             this.setSingleSplit(dir, split);
         }
+        this.endUpdate();
     }
 
     private void setSingleSplit(Direction dir, int split) {
@@ -164,33 +235,26 @@ public class Game {
         return this.colors[y][x];
     }
 
+    public Color getTargetColor(int x, int y) {
+        boolean topLeftColored = switch (this.splitType) {
+            case NONE -> true;
+            case HOR -> y < this.getSplit(Direction.LEFT);
+            case VERT -> x < this.getSplit(Direction.UP);
+            case HOR_AND_VERT -> (y < this.getSplit(Direction.LEFT) && x < this.getSplit(Direction.UP))
+                    || (this.getSplit(Direction.LEFT) <= y && this.getSplit(Direction.DOWN) <= x);
+            case VERT_AND_HOR -> (x < this.getSplit(Direction.UP) && y < this.getSplit(Direction.LEFT))
+                    || (this.getSplit(Direction.UP) <= x && this.getSplit(Direction.RIGHT) <= y);
+            case TOP_LEFT -> x < this.getSplit(Direction.UP) && y < this.getSplit(Direction.LEFT);
+            case TOP_RIGHT -> !(this.getSplit(Direction.UP) <= x && y < this.getSplit(Direction.RIGHT));
+            case BOTTOM_LEFT -> !(x < this.getSplit(Direction.DOWN) && this.getSplit(Direction.LEFT) <= y);
+            case BOTTOM_RIGHT -> !(this.getSplit(Direction.DOWN) <= x && this.getSplit(Direction.RIGHT) <= y);
+        };
+        return topLeftColored ? this.topLeftBorderColor : this.switchColor(this.topLeftBorderColor);
+    }
+
     public boolean isCellCorrect(int x, int y) {
         Color c = this.getColor(x, y);
-        if (c == Color.NONE) {
-            return true;
-        }
-        return switch (this.splitType) {
-            case NONE -> c == this.topLeftBorderColor;
-            case HOR -> y < this.getSplit(Direction.LEFT) ^ c != this.topLeftBorderColor;
-            case VERT -> x < this.getSplit(Direction.UP) ^ c != this.topLeftBorderColor;
-            case HOR_AND_VERT -> ((y < this.getSplit(Direction.LEFT) && x < this.getSplit(Direction.UP))
-                    || ((this.getSplit(Direction.LEFT) <= y && this.getSplit(Direction.DOWN) <= x)))
-                    ^ c != this.topLeftBorderColor;
-            case VERT_AND_HOR -> ((x < this.getSplit(Direction.UP) && y < this.getSplit(Direction.LEFT))
-                    || ((this.getSplit(Direction.UP) <= x && this.getSplit(Direction.RIGHT) <= y)))
-                    ^ c != this.topLeftBorderColor;
-            case TOP_LEFT ->
-                (x < this.getSplit(Direction.UP) && y < this.getSplit(Direction.LEFT)) ^ c != this.topLeftBorderColor;
-            case TOP_RIGHT ->
-                (this.getSplit(Direction.UP) <= x && y < this.getSplit(Direction.RIGHT)) ^ c == this.topLeftBorderColor;
-            case BOTTOM_LEFT ->
-                (x < this.getSplit(Direction.DOWN) && this.getSplit(Direction.LEFT) <= y)
-                        ^ c == this.topLeftBorderColor;
-            case BOTTOM_RIGHT ->
-                (this.getSplit(Direction.DOWN) <= x && this.getSplit(Direction.RIGHT) <= y)
-                        ^ c == this.topLeftBorderColor;
-            default -> false;
-        };
+        return c == Color.NONE || c == this.getTargetColor(x, y);
     }
 
     public boolean isSolved() {
@@ -208,20 +272,76 @@ public class Game {
         if (this.getNumber(x, y) == 0 || this.getColor(x, y) == Color.NONE) {
             throw new UnsupportedOperationException();
         }
-        if (!this.doWave(x, y, dir, this.numbers[y][x]--)) {
+        this.beginUpdate();
+        boolean waved = this.doWave(x, y, dir, this.numbers[y][x]--);
+        if (!waved) {
             ++this.numbers[y][x];
-            return false;
         }
-        return true;
+        this.endUpdate();
+        return waved;
     }
 
     public void reverseWave(int x, int y, Direction dir) {
         if (this.getColor(x, y) == Color.NONE) {
             throw new UnsupportedOperationException();
         }
+        this.beginUpdate();
         if (!this.doWave(x, y, dir, ++this.numbers[y][x])) {
             --this.numbers[y][x];
         }
+        this.endUpdate();
+    }
+
+    // Sends the waves of every cell in solution as one update. Returns false as soon as a wave is blocked, leaving
+    // the waves sent so far in place.
+    public boolean applySolution(Solution solution) {
+        this.beginUpdate();
+        try {
+            for (int y = 0; y < this.getHeight(); ++y) {
+                for (int x = 0; x < this.getWidth(); ++x) {
+                    for (Direction dir : solution.getCellDirections(x, y)) {
+                        if (!this.wave(x, y, dir)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        } finally {
+            this.endUpdate();
+        }
+    }
+
+    // Changes made until the matching endUpdate reach the listeners as one coalesced event per listener. Updates may
+    // be nested; the event is sent when the outermost one ends.
+    public void beginUpdate() {
+        ++this.updateDepth;
+    }
+
+    public void endUpdate() {
+        if (this.updateDepth == 0) {
+            throw new IllegalStateException("No update in progress");
+        } else if (--this.updateDepth == 0) {
+            if (!this.changedCells.isEmpty()) {
+                BitSet cells = (BitSet) this.changedCells.clone();
+                this.changedCells.clear();
+                this.cellListeners.forEach(l -> l.onCellsChange(this, cells));
+            }
+            if (!this.changedSplits.isEmpty()) {
+                Set<Direction> dirs = EnumSet.copyOf(this.changedSplits);
+                this.changedSplits.clear();
+                this.splitListeners.forEach(l -> l.onSplitsChange(dirs));
+            }
+        }
+    }
+
+    public void update(Runnable changes) {
+        this.beginUpdate();
+        try {
+            changes.run();
+        } finally {
+            this.endUpdate();
+        }
     }
 
     private boolean doWave(int x, int y, Direction dir, int number) {
@@ -243,7 +363,8 @@ public class Game {
         for (int i = 0; i <= number; ++i) {
             int x1 = x + i * dx;
             int y1 = y + i * dy;
-            if (0 <= x1 && x1 < this.getWidth() && 0 <= y1 && y1 < this.getHeight()) {
+            if (0 <= x1 && x1 < this.getWidth() && 0 <= y1 && y1 < this.getHeight()
+                    && this.colors[y1][x1] != Color.NONE) {
                 this.switchColor(x1, y1);
             }
         }
@@ -259,7 +380,13 @@ public class Game {
     }
 
     private void notifyCellListeners(int x, int y) {
-        this.cellListeners.forEach(l -> l.onCellChange(x, y));
+        if (this.cellListeners.isEmpty()) {
+            return;
+        } else if (this.updateDepth != 0) {
+            this.changedCells.set(y * this.getWidth() + x);
+        } else {
+            this.cellListeners.forEach(l -> l.onCellChange(x, y));
+        }
     }
 
     public void addSplitListener(SplitListener l) {
@@ -271,7 +398,13 @@ public class Game {
     }
 
     private void notifySplitListeners(Direction dir) {
-        this.splitListeners.forEach(l -> l.onSplitChange(dir));
+        if (this.splitListeners.isEmpty()) {
+            return;
+        } else if (this.updateDepth != 0) {
+            this.changedSplits.add(dir);
+        } else {
+            this.splitListeners.forEach(l -> l.onSplitChange(dir));
+        }
     }
 
     private Color switchColor(Color color) {
@@ -283,15 +416,43 @@ public class Game {
     }
 
     public Game copy() {
-        Game copy = new Game(this.getWidth(), this.getHeight());
-        copy.setSplitType(this.splitType);
-        for (int y = 0; y < this.getHeight(); ++y) {
-            for (int x = 0; x < this.getWidth(); ++x) {
-                copy.setCell(x, y, this.getColor(x, y), this.getNumber(x, y));
+        return new Game(this);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    // Returns the game to the state of snapshot. Listeners hear of the cells and sides that differ as one update.
+    public void restore(Snapshot snapshot) {
+        if (snapshot.width != this.getWidth() || snapshot.height != this.getHeight()) {
+            throw new IllegalArgumentException("Snapshot size does not match the game size");
+        }
+        this.beginUpdate();
+        for (int y = 0; y < snapshot.height; ++y) {
+            int offset = y * snapshot.width;
+            if (!this.cellListeners.isEmpty()) {
+                for (int x = 0; x < snapshot.width; ++x) {
+                    if (this.colors[y][x] != snapshot.colors[offset + x]
+                            || this.numbers[y][x] != snapshot.numbers[offset + x]) {
+                        this.notifyCellListeners(x, y);
+                    }
+                }
+            }
+            System.arraycopy(snapshot.colors, offset, this.colors[y], 0, snapshot.width);
+            System.arraycopy(snapshot.numbers, offset, this.numbers[y], 0, snapshot.width);
+        }
+        boolean bordersChanged = this.splitType != snapshot.splitType
+                || this.topLeftBorderColor != snapshot.topLeftBorderColor;
+        this.splitType = snapshot.splitType;
+        this.topLeftBorderColor = snapshot.topLeftBorderColor;
+        for (Direction dir : Direction.values()) {
+            int split = snapshot.splits[dir.ordinal()];
+            if (this.getSplit(dir) != split || bordersChanged) {
+                this.notifySplitListeners(dir);
             }
+            this.splits.put(dir, split);
         }
-        Arrays.stream(Direction.values()).forEach(d -> copy.setSplit(d, this.getSplit(d)));
-        copy.topLeftBorderColor = this.topLeftBorderColor;
-        return copy;
+        this.endUpdate();
     }
 }
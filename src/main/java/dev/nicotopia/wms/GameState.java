@@ -0,0 +1,338 @@
+package dev.nicotopia.wms;
+
+import java.util.Arrays;
+
+import dev.nicotopia.wms.Game.Color;
+import dev.nicotopia.wms.Game.Direction;
+
+public class GameState {
+    private final WaveTable table;
+    private final long colors[];
+    private final long none[];
+    private final long target[];
+    private final long wrong[];
+    private final long reachable[];
+    private final long waveable[];
+    private final byte numbers[];
+    private final short reachCounts[];
+    private int wrongCount;
+    private long hash;
+
+    public GameState(Game game) {
+        this(game, Symmetry.IDENTITY);
+    }
+
+    public GameState(Game game, Symmetry symmetry) {
+        int width = game.getWidth();
+        int height = game.getHeight();
+        this.table = WaveTable.get(symmetry.getWidth(width, height), symmetry.getHeight(width, height));
+        this.colors = new long[this.table.getWordCount()];
+        this.none = new long[this.colors.length];
+        this.target = new long[this.colors.length];
+        this.wrong = new long[this.colors.length];
+        this.reachable = new long[this.colors.length];
+        this.waveable = new long[this.colors.length];
+        this.numbers = new byte[width * height];
+        this.reachCounts = new short[this.numbers.length];
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                int cell = this.getCell(symmetry.getX(x, y, width, height), symmetry.getY(x, y, width, height));
+                switch (game.getColor(x, y)) {
+                    case NONE -> this.none[cell >>> 6] |= 1L << cell;
+                    case COLOR_1 -> this.colors[cell >>> 6] |= 1L << cell;
+                    case COLOR_0 -> {
+                    }
+                }
+                if (game.getTargetColor(x, y) == Color.COLOR_1) {
+                    this.target[cell >>> 6] |= 1L << cell;
+                }
+                this.numbers[cell] = (byte) game.getNumber(x, y);
+            }
+        }
+        for (int i = 0; i < this.wrong.length; ++i) {
+            this.wrong[i] = (this.colors[i] ^ this.target[i]) & ~this.none[i];
+            this.wrongCount += Long.bitCount(this.wrong[i]);
+        }
+        this.hash = Zobrist.mask(this.wrong, 0, this.wrong.length);
+        for (int cell = 0; cell < this.numbers.length; ++cell) {
+            if (this.numbers[cell] != 0 && !this.isNone(cell)) {
+                this.waveable[cell >>> 6] |= 1L << cell;
+                this.hash ^= Zobrist.number(cell, this.numbers[cell]);
+                for (int distance = 1; distance <= this.numbers[cell]; ++distance) {
+                    this.addReach(cell, distance, 1);
+                }
+            }
+            this.updateReachable(cell);
+        }
+    }
+
+    public GameState(GameState other) {
+        this.table = other.table;
+        this.colors = Arrays.copyOf(other.colors, other.colors.length);
+        this.none = Arrays.copyOf(other.none, other.none.length);
+        this.target = Arrays.copyOf(other.target, other.target.length);
+        this.wrong = Arrays.copyOf(other.wrong, other.wrong.length);
+        this.reachable = Arrays.copyOf(other.reachable, other.reachable.length);
+        this.waveable = Arrays.copyOf(other.waveable, other.waveable.length);
+        this.numbers = Arrays.copyOf(other.numbers, other.numbers.length);
+        this.reachCounts = Arrays.copyOf(other.reachCounts, other.reachCounts.length);
+        this.wrongCount = other.wrongCount;
+        this.hash = other.hash;
+    }
+
+    // A copy restricted to the given cells: all other cells become NONE cells without numbers.
+    GameState(GameState other, long cells[]) {
+        this(other);
+        for (int cell = 0; cell < this.numbers.length; ++cell) {
+            if ((cells[cell >>> 6] & 1L << cell) == 0 && this.numbers[cell] != 0) {
+                this.setNumber(cell, 0);
+            }
+        }
+        this.wrongCount = 0;
+        for (int i = 0; i < this.wrong.length; ++i) {
+            this.none[i] |= ~cells[i];
+            this.wrong[i] &= cells[i];
+            this.wrongCount += Long.bitCount(this.wrong[i]);
+        }
+        this.hash = Zobrist.mask(this.wrong, 0, this.wrong.length);
+        for (int cell = this.nextWaveable(0); cell != -1; cell = this.nextWaveable(cell + 1)) {
+            this.hash ^= Zobrist.number(cell, this.numbers[cell]);
+        }
+    }
+
+    public static int wordCount(int cellCount) {
+        return (cellCount + 63) >>> 6;
+    }
+
+    public WaveTable getWaveTable() {
+        return this.table;
+    }
+
+    public int getWidth() {
+        return this.table.getWidth();
+    }
+
+    public int getHeight() {
+        return this.table.getHeight();
+    }
+
+    public int getCellCount() {
+        return this.numbers.length;
+    }
+
+    public int getCell(int x, int y) {
+        return y * this.table.getWidth() + x;
+    }
+
+    public boolean isNone(int cell) {
+        return (this.none[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    public Color getColor(int cell) {
+        if (this.isNone(cell)) {
+            return Color.NONE;
+        }
+        return (this.colors[cell >>> 6] & 1L << cell) == 0 ? Color.COLOR_0 : Color.COLOR_1;
+    }
+
+    public boolean isCorrect(int cell) {
+        return (this.wrong[cell >>> 6] & 1L << cell) == 0;
+    }
+
+    public int getWrongCount() {
+        return this.wrongCount;
+    }
+
+    public long getHash() {
+        return this.hash;
+    }
+
+    public int getWaveableCount() {
+        int count = 0;
+        for (long w : this.waveable) {
+            count += Long.bitCount(w);
+        }
+        return count;
+    }
+
+    public boolean isSolved() {
+        return this.wrongCount == 0;
+    }
+
+    // Whether exactly the cells of the mask at offset are wrong, i.e. toggling them would solve the puzzle.
+    public boolean isSolved(long masks[], int offset) {
+        for (int i = 0; i < this.wrong.length; ++i) {
+            if (this.wrong[i] != masks[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static int nextSetBit(long bits[], int from) {
+        int word = from >>> 6;
+        if (bits.length <= word) {
+            return -1;
+        }
+        long w = bits[word] & -1L << from;
+        while (w == 0) {
+            if (++word == bits.length) {
+                return -1;
+            }
+            w = bits[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(w);
+    }
+
+    public int nextWrong(int from) {
+        return nextSetBit(this.wrong, from);
+    }
+
+    public int nextWaveable(int from) {
+        return nextSetBit(this.waveable, from);
+    }
+
+    public long getNoneMask(int word) {
+        return this.none[word];
+    }
+
+    public long getWrongMask(int word) {
+        return this.wrong[word];
+    }
+
+    public int getReachCount(int cell) {
+        return this.reachCounts[cell];
+    }
+
+    public boolean isEveryWrongCellReachable() {
+        for (int i = 0; i < this.wrong.length; ++i) {
+            if ((this.wrong[i] & ~this.reachable[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEveryWrongCellReachable(long masks[], int offset) {
+        for (int i = 0; i < this.wrong.length; ++i) {
+            if (((this.wrong[i] ^ masks[offset + i]) & ~this.reachable[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getNumber(int cell) {
+        return this.numbers[cell];
+    }
+
+    public void setNumber(int cell, int number) {
+        if (!this.isNone(cell)) {
+            for (int distance = number + 1; distance <= this.numbers[cell]; ++distance) {
+                this.addReach(cell, distance, -1);
+            }
+            for (int distance = this.numbers[cell] + 1; distance <= number; ++distance) {
+                this.addReach(cell, distance, 1);
+            }
+            if ((this.numbers[cell] == 0) != (number == 0)) {
+                this.waveable[cell >>> 6] ^= 1L << cell;
+            }
+            this.hash ^= Zobrist.number(cell, this.numbers[cell]) ^ Zobrist.number(cell, number);
+        }
+        this.numbers[cell] = (byte) number;
+        this.updateReachable(cell);
+    }
+
+    public boolean canWave(int cell) {
+        return (this.waveable[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    public boolean wave(int cell, Direction dir) {
+        if (!this.canWave(cell)) {
+            throw new UnsupportedOperationException();
+        }
+        if (this.isBlocked(cell, dir)) {
+            return false;
+        }
+        this.toggle(this.table.getOffset(cell, dir, this.numbers[cell]));
+        this.hash ^= Zobrist.number(cell, this.numbers[cell]) ^ Zobrist.number(cell, this.numbers[cell] - 1);
+        this.addReach(cell, this.numbers[cell]--, -1);
+        if (this.numbers[cell] == 0) {
+            this.waveable[cell >>> 6] &= ~(1L << cell);
+            this.updateReachable(cell);
+        }
+        return true;
+    }
+
+    public void reverseWave(int cell, Direction dir) {
+        if (this.isNone(cell)) {
+            throw new UnsupportedOperationException();
+        }
+        if (!this.isBlocked(cell, dir)) {
+            this.hash ^= Zobrist.number(cell, this.numbers[cell]) ^ Zobrist.number(cell, this.numbers[cell] + 1);
+            this.toggle(this.table.getOffset(cell, dir, ++this.numbers[cell]));
+            this.addReach(cell, this.numbers[cell], 1);
+            if (this.numbers[cell] == 1) {
+                this.waveable[cell >>> 6] |= 1L << cell;
+                this.updateReachable(cell);
+            }
+        }
+    }
+
+    public boolean isBlocked(int cell, Direction dir) {
+        return this.table.isBlocked(cell, dir);
+    }
+
+    public void toggle(long masks[], int offset, long hash) {
+        for (int i = 0; i < this.colors.length; ++i) {
+            long mask = masks[offset + i];
+            this.wrongCount += Long.bitCount(mask) - 2 * Long.bitCount(mask & this.wrong[i]);
+            this.colors[i] ^= mask;
+            this.wrong[i] ^= mask;
+        }
+        this.hash ^= hash;
+    }
+
+    private void toggle(int offset) {
+        long masks[] = this.table.getMasks();
+        for (int i = 0; i < this.colors.length; ++i) {
+            long mask = masks[offset + i] & ~this.none[i];
+            this.wrongCount += Long.bitCount(mask) - 2 * Long.bitCount(mask & this.wrong[i]);
+            this.colors[i] ^= mask;
+            this.wrong[i] ^= mask;
+            for (long w = mask; w != 0; w &= w - 1) {
+                this.hash ^= Zobrist.cell((i << 6) + Long.numberOfTrailingZeros(w));
+            }
+        }
+    }
+
+    private void addReach(int cell, int distance, int delta) {
+        int x = cell % this.getWidth();
+        int y = cell / this.getWidth();
+        if (distance <= x) {
+            this.addReachCount(cell - distance, delta);
+        }
+        if (distance < this.getWidth() - x) {
+            this.addReachCount(cell + distance, delta);
+        }
+        if (distance <= y) {
+            this.addReachCount(cell - distance * this.getWidth(), delta);
+        }
+        if (distance < this.getHeight() - y) {
+            this.addReachCount(cell + distance * this.getWidth(), delta);
+        }
+    }
+
+    private void addReachCount(int cell, int delta) {
+        this.reachCounts[cell] += delta;
+        this.updateReachable(cell);
+    }
+
+    private void updateReachable(int cell) {
+        if (this.reachCounts[cell] != 0 || this.canWave(cell)) {
+            this.reachable[cell >>> 6] |= 1L << cell;
+        } else {
+            this.reachable[cell >>> 6] &= ~(1L << cell);
+        }
+    }
+}
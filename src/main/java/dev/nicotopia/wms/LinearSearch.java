@@ -0,0 +1,211 @@
+package dev.nicotopia.wms;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+class LinearSearch {
+    private static final int MAX_ENUMERATED_FREE_VARIABLES = 20;
+
+    private final Search search;
+    private final int cells[];
+    private final int columnStarts[];
+    private final int ranks[];
+    private final long coordinates[][];
+    private final int coordinateEntries[][];
+    private final boolean forced[];
+    private int columns;
+    private long particular[];
+    private long nullSpace[][];
+
+    LinearSearch(Search search) {
+        this.search = search;
+        GameState state = search.getState();
+        this.cells = IntStream.range(0, state.getCellCount()).filter(state::canWave).toArray();
+        this.columnStarts = new int[this.cells.length];
+        this.ranks = new int[this.cells.length];
+        this.coordinates = new long[this.cells.length][];
+        this.coordinateEntries = new int[this.cells.length][];
+        this.forced = new boolean[this.cells.length];
+    }
+
+    boolean reduce() {
+        GameState state = this.search.getState();
+        int words = state.getWaveTable().getWordCount();
+        long bases[][][] = new long[this.cells.length][][];
+        for (int v = 0; v < this.cells.length; ++v) {
+            bases[v] = this.buildBasis(v, words);
+            this.columnStarts[v] = this.columns;
+            this.columns += this.ranks[v];
+        }
+        int rowWords = GameState.wordCount(this.columns + 1);
+        long rows[][] = new long[state.getCellCount()][rowWords];
+        for (int v = 0; v < this.cells.length; ++v) {
+            for (int j = 0; j < this.ranks[v]; ++j) {
+                int column = this.columnStarts[v] + j;
+                for (int cell = GameState.nextSetBit(bases[v][j], 0); cell != -1; cell = GameState
+                        .nextSetBit(bases[v][j], cell + 1)) {
+                    rows[cell][column >>> 6] |= 1L << column;
+                }
+            }
+        }
+        for (int cell = state.nextWrong(0); cell != -1; cell = state.nextWrong(cell + 1)) {
+            rows[cell][this.columns >>> 6] |= 1L << this.columns;
+        }
+        int pivotRows[] = new int[this.columns];
+        int rank = eliminate(rows, this.columns, pivotRows);
+        for (int r = rank; r < rows.length; ++r) {
+            if ((rows[r][this.columns >>> 6] & 1L << this.columns) != 0) {
+                return false;
+            }
+        }
+        long free[] = new long[rowWords];
+        int freeColumns[] = IntStream.range(0, this.columns).filter(c -> pivotRows[c] == -1).toArray();
+        for (int column : freeColumns) {
+            free[column >>> 6] |= 1L << column;
+        }
+        this.particular = new long[rowWords];
+        for (int column = 0; column < this.columns; ++column) {
+            if (pivotRows[column] != -1 && (rows[pivotRows[column]][this.columns >>> 6] & 1L << this.columns) != 0) {
+                this.particular[column >>> 6] |= 1L << column;
+            }
+        }
+        this.nullSpace = new long[freeColumns.length][rowWords];
+        for (int k = 0; k < freeColumns.length; ++k) {
+            int f = freeColumns[k];
+            this.nullSpace[k][f >>> 6] |= 1L << f;
+            for (int column = 0; column < this.columns; ++column) {
+                if (pivotRows[column] != -1 && (rows[pivotRows[column]][f >>> 6] & 1L << f) != 0) {
+                    this.nullSpace[k][column >>> 6] |= 1L << column;
+                }
+            }
+        }
+        for (int v = 0; v < this.cells.length; ++v) {
+            this.forced[v] = true;
+            for (int j = 0; j < this.ranks[v] && this.forced[v]; ++j) {
+                int column = this.columnStarts[v] + j;
+                this.forced[v] = pivotRows[column] != -1 && !intersects(rows[pivotRows[column]], free);
+            }
+            if (this.forced[v]) {
+                int entry = this.findEntry(v, this.particular);
+                if (entry == -1) {
+                    return false;
+                }
+                this.search.assign(this.cells[v], entry);
+            }
+        }
+        return true;
+    }
+
+    boolean isEnumerable() {
+        return this.nullSpace.length <= MAX_ENUMERATED_FREE_VARIABLES;
+    }
+
+    int[] enumerate() {
+        long x[] = Arrays.copyOf(this.particular, this.particular.length);
+        for (long g = 0; g < 1L << this.nullSpace.length; ++g) {
+            if ((g & SolveControl.POLL_INTERVAL - 1) == SolveControl.POLL_INTERVAL - 1
+                    && this.search.getControl().poll(SolveControl.POLL_INTERVAL, 0)) {
+                return null;
+            } else if (g != 0) {
+                long n[] = this.nullSpace[Long.numberOfTrailingZeros(g)];
+                for (int i = 0; i < x.length; ++i) {
+                    x[i] ^= n[i];
+                }
+            }
+            if (this.isFeasible(x)) {
+                for (int v = 0; v < this.cells.length; ++v) {
+                    if (!this.forced[v]) {
+                        this.search.assign(this.cells[v], this.findEntry(v, x));
+                    }
+                }
+                return this.search.getChoices();
+            }
+        }
+        return null;
+    }
+
+    private boolean isFeasible(long x[]) {
+        for (int v = 0; v < this.cells.length; ++v) {
+            if (!this.forced[v] && this.findEntry(v, x) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int findEntry(int v, long x[]) {
+        long coordinate = 0;
+        for (int j = 0; j < this.ranks[v]; ++j) {
+            int column = this.columnStarts[v] + j;
+            coordinate |= (x[column >>> 6] >>> column & 1L) << j;
+        }
+        int i = Arrays.binarySearch(this.coordinates[v], coordinate);
+        return i < 0 ? -1 : this.coordinateEntries[v][i];
+    }
+
+    private long[][] buildBasis(int v, int words) {
+        CellDomain domain = this.search.getDomain(this.cells[v]);
+        long basis[][] = new long[domain.size()][];
+        for (int e = 0; e < domain.size(); ++e) {
+            basis[e] = Arrays.copyOfRange(domain.getMasks(), domain.getMaskOffset(e),
+                    domain.getMaskOffset(e) + words);
+        }
+        int pivots[] = new int[words << 6];
+        int rank = eliminate(basis, words << 6, pivots);
+        this.ranks[v] = rank;
+        int pivotCells[] = IntStream.range(0, words << 6).filter(c -> pivots[c] != -1).toArray();
+        long coords[] = new long[domain.size()];
+        for (int e = 0; e < domain.size(); ++e) {
+            for (int j = 0; j < rank; ++j) {
+                int cell = pivotCells[j];
+                coords[e] |= (domain.getMasks()[domain.getMaskOffset(e) + (cell >>> 6)] >>> cell & 1L) << j;
+            }
+        }
+        Integer order[] = IntStream.range(0, domain.size()).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, (a, b) -> Long.compare(coords[a], coords[b]));
+        this.coordinates[v] = Arrays.stream(order).mapToLong(e -> coords[e]).toArray();
+        this.coordinateEntries[v] = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+        long result[][] = new long[rank][];
+        for (int j = 0; j < rank; ++j) {
+            result[j] = basis[pivots[pivotCells[j]]];
+        }
+        return result;
+    }
+
+    private static int eliminate(long rows[][], int columns, int pivotRows[]) {
+        Arrays.fill(pivotRows, -1);
+        int rank = 0;
+        for (int column = 0; column < columns && rank < rows.length; ++column) {
+            int word = column >>> 6;
+            long bit = 1L << column;
+            int pivot = rank;
+            while (pivot < rows.length && (rows[pivot][word] & bit) == 0) {
+                ++pivot;
+            }
+            if (pivot == rows.length) {
+                continue;
+            }
+            long tmp[] = rows[pivot];
+            rows[pivot] = rows[rank];
+            rows[rank] = tmp;
+            for (int r = 0; r < rows.length; ++r) {
+                if (r != rank && (rows[r][word] & bit) != 0) {
+                    for (int i = word; i < tmp.length; ++i) {
+                        rows[r][i] ^= tmp[i];
+                    }
+                }
+            }
+            pivotRows[column] = rank++;
+        }
+        return rank;
+    }
+
+    private static boolean intersects(long a[], long b[]) {
+        for (int i = 0; i < a.length; ++i) {
+            if ((a[i] & b[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,121 @@
+package dev.nicotopia.wms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+class ParallelSearch {
+    private class SearchTask extends RecursiveTask<int[]> {
+        private final Search search;
+        private final int depth;
+
+        private SearchTask(Search search, int depth) {
+            this.search = search;
+            this.depth = depth;
+        }
+
+        @Override
+        protected int[] compute() {
+            GameState state = this.search.getState();
+            TranspositionTable table = this.search.getTranspositionTable();
+            if (this.search.getControl().isStopped()) {
+                return null;
+            } else if (!state.isEveryWrongCellReachable()) {
+                this.search.getControl().addStatistics(1, 0, 0, 0, this.depth);
+                return null;
+            } else if (state.isSolved()) {
+                return this.found();
+            } else if (table != null && table.contains(state.getHash())) {
+                this.search.getControl().addStatistics(0, 1, 0, 0, this.depth);
+                return null;
+            } else if (ParallelSearch.this.splitDepth <= this.depth) {
+                return this.search.solve(this.depth) ? this.found() : null;
+            }
+            int cell = this.search.selectCell();
+            List<SearchTask> tasks = new ArrayList<>();
+            for (int i = 0; i < this.search.getDomain(cell).size(); ++i) {
+                if (this.search.isViable(cell, i)) {
+                    Search child = new Search(this.search);
+                    child.assign(cell, i);
+                    tasks.add(new SearchTask(child, this.depth + 1));
+                }
+            }
+            this.search.flushStatistics();
+            for (SearchTask task : invokeAll(tasks)) {
+                if (task.join() != null) {
+                    return task.join();
+                }
+            }
+            // As in Search, a state is only known to be unsolvable once every subtask finished without being stopped.
+            if (table != null && !this.search.getControl().isStopped()) {
+                table.add(state.getHash(), state.getWaveableCount());
+            }
+            return null;
+        }
+
+        private int[] found() {
+            this.search.getControl().stop(Solver.Outcome.SOLVED);
+            return this.search.getChoices();
+        }
+    }
+
+    private class ComponentTask extends RecursiveTask<int[]> {
+        private final Search search;
+        private final SolveControl control;
+
+        private ComponentTask(Search search, SolveControl control) {
+            this.search = search;
+            this.control = control;
+        }
+
+        @Override
+        protected int[] compute() {
+            int result[] = new SearchTask(this.search, 0).invoke();
+            if (result == null && !this.search.getControl().isStopped()) {
+                this.control.stop(Solver.Outcome.UNSOLVABLE);
+            }
+            return result;
+        }
+    }
+
+    private final int parallelism;
+    private final int splitDepth;
+
+    ParallelSearch(int parallelism, int splitDepth) {
+        this.parallelism = parallelism;
+        this.splitDepth = splitDepth;
+    }
+
+    int[] solve(Search search) {
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            return pool.invoke(new SearchTask(search, 0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Solves independent searches side by side. Their controls must be children of control, which is stopped as
+    // UNSOLVABLE as soon as one of them fails.
+    int[][] solve(List<Search> searches, SolveControl control) {
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            List<ComponentTask> tasks = new ArrayList<>();
+            for (Search search : searches) {
+                tasks.add(new ComponentTask(search, control));
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+            int results[][] = new int[tasks.size()][];
+            for (int i = 0; i < results.length; ++i) {
+                if ((results[i] = tasks.get(i).join()) == null) {
+                    return null;
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
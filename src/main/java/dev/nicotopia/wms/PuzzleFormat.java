@@ -0,0 +1,164 @@
+package dev.nicotopia.wms;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+import dev.nicotopia.wms.Game.Color;
+import dev.nicotopia.wms.Game.Direction;
+import dev.nicotopia.wms.Game.SplitType;
+
+public class PuzzleFormat {
+    private PuzzleFormat() {
+    }
+
+    public static Game read(Reader reader) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        Game game = null;
+        SplitType splitType = SplitType.NONE;
+        int splits[] = new int[Direction.values().length];
+        int splitLine = 0;
+        Color border = Color.COLOR_0;
+        int row = -1;
+        int lineNumber = 0;
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            ++lineNumber;
+            int comment = line.indexOf('#');
+            String tokens[] = (comment == -1 ? line : line.substring(0, comment)).trim().split("\\s+");
+            if (tokens[0].isEmpty()) {
+                continue;
+            }
+            try {
+                if (0 <= row) {
+                    if (row == game.getHeight()) {
+                        throw new IOException("too many rows");
+                    } else if (tokens.length != game.getWidth()) {
+                        throw new IOException("expected " + game.getWidth() + " cells");
+                    }
+                    for (int x = 0; x < tokens.length; ++x) {
+                        Color color = switch (tokens[x].charAt(0)) {
+                            case 'a' -> Color.COLOR_0;
+                            case 'b' -> Color.COLOR_1;
+                            case '.' -> Color.NONE;
+                            default -> throw new IOException("invalid cell " + tokens[x]);
+                        };
+                        int number = tokens[x].length() == 1 ? 0 : Integer.parseInt(tokens[x].substring(1));
+                        // The solver keeps numbers in bytes.
+                        if (number < 0 || Byte.MAX_VALUE < number) {
+                            throw new IOException("invalid cell " + tokens[x]);
+                        }
+                        game.setCell(x, row, color, number);
+                    }
+                    ++row;
+                    continue;
+                }
+                switch (tokens[0]) {
+                    case "size" -> {
+                        expectTokens(tokens, 3);
+                        int width = Integer.parseInt(tokens[1]);
+                        int height = Integer.parseInt(tokens[2]);
+                        if (width < 1 || height < 1) {
+                            throw new IOException("invalid size " + width + "x" + height);
+                        }
+                        game = new Game(width, height);
+                    }
+                    case "split" -> {
+                        expectTokens(tokens, 2 + splits.length);
+                        splitType = SplitType.valueOf(tokens[1]);
+                        for (int i = 0; i < splits.length; ++i) {
+                            splits[i] = Integer.parseInt(tokens[2 + i]);
+                        }
+                        splitLine = lineNumber;
+                        if (game != null) {
+                            checkSplits(game, splits, "");
+                        }
+                    }
+                    case "border" -> {
+                        expectTokens(tokens, 2);
+                        border = Color.valueOf(tokens[1]);
+                        if (border == Color.NONE) {
+                            throw new IOException("border color must not be NONE");
+                        }
+                    }
+                    case "cells" -> {
+                        if (game == null) {
+                            throw new IOException("cells before size");
+                        } else if (splitLine != 0) {
+                            checkSplits(game, splits, " on line " + splitLine);
+                        }
+                        game.setSplitType(splitType);
+                        for (Direction dir : Direction.values()) {
+                            game.setSplit(dir, splits[dir.ordinal()]);
+                        }
+                        if (game.getTopLeftBorderColor() != border) {
+                            game.switchTopLeftBorderColor();
+                        }
+                        row = 0;
+                    }
+                    default -> throw new IOException("unknown keyword " + tokens[0]);
+                }
+            } catch (IOException | IllegalArgumentException ex) {
+                throw new IOException("line " + lineNumber + ": " + ex.getMessage(), ex);
+            }
+        }
+        if (game == null || row != game.getHeight()) {
+            throw new IOException("incomplete puzzle");
+        }
+        return game;
+    }
+
+    public static void write(Game game, Writer writer) throws IOException {
+        writer.write("size " + game.getWidth() + " " + game.getHeight() + "\n");
+        writer.write("split " + game.getSplitType());
+        for (Direction dir : Direction.values()) {
+            writer.write(" " + game.getSplit(dir));
+        }
+        writer.write("\nborder " + game.getTopLeftBorderColor() + "\ncells\n");
+        for (int y = 0; y < game.getHeight(); ++y) {
+            String cells[] = new String[game.getWidth()];
+            for (int x = 0; x < game.getWidth(); ++x) {
+                int number = game.getNumber(x, y);
+                cells[x] = switch (game.getColor(x, y)) {
+                    case COLOR_0 -> "a";
+                    case COLOR_1 -> "b";
+                    case NONE -> ".";
+                } + (number == 0 ? "" : String.valueOf(number));
+            }
+            writer.write(String.join(" ", cells) + "\n");
+        }
+    }
+
+    public static String formatDirections(List<Direction> dirs) {
+        if (dirs.isEmpty()) {
+            return "-";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Direction dir : dirs) {
+            sb.append(switch (dir) {
+                case LEFT -> 'L';
+                case UP -> 'U';
+                case RIGHT -> 'R';
+                case DOWN -> 'D';
+            });
+        }
+        return sb.toString();
+    }
+
+    private static void expectTokens(String tokens[], int count) throws IOException {
+        if (tokens.length != count) {
+            throw new IOException("expected " + (count - 1) + " values after " + tokens[0]);
+        }
+    }
+
+    // Splits along the rows, LEFT and RIGHT, lie between 0 and the height, the others between 0 and the width.
+    private static void checkSplits(Game game, int splits[], String where) throws IOException {
+        for (Direction dir : Direction.values()) {
+            int max = dir == Direction.LEFT || dir == Direction.RIGHT ? game.getHeight() : game.getWidth();
+            if (splits[dir.ordinal()] < 0 || max < splits[dir.ordinal()]) {
+                throw new IOException("split " + dir + " " + splits[dir.ordinal()] + where + " is outside 0.." + max);
+            }
+        }
+    }
+}
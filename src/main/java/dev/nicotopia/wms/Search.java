@@ -0,0 +1,595 @@
+package dev.nicotopia.wms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class Search {
+    private static final int MAX_MEMOISED_COUNTS = 1 << 20;
+    private static final int INFINITE_COST = Integer.MAX_VALUE;
+
+    private record Mask(long[] bits) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Mask m && Arrays.equals(this.bits, m.bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.bits);
+        }
+    }
+
+    private final GameState state;
+    private final CellDomain domains[];
+    private final int choices[];
+    private final BranchingHeuristic branchingHeuristic;
+    private final TranspositionTable transpositionTable;
+    private final SolveControl control;
+    private final int stackCells[];
+    private final int stackEntries[];
+    private final byte stackNumbers[];
+    private long nodes;
+    private long unreachablePrunes;
+    private long transpositionHits;
+    private long inviableEntries;
+    private long symmetricEntries;
+    private int maxDepth;
+    private int symmetricCell = -1;
+    private long symmetricHash;
+    private long symmetricEntryHash;
+    private BitSet symmetricDuplicates;
+    private int openDepth = -1;
+    private int solvedDepth;
+    private Solver.Objective objective;
+    private int coverages[][];
+    private int slotCounts[];
+    private int stackCosts[];
+    private int stackMinimums[];
+    private int nextBound;
+
+    Search(GameState state, CellDomain domains[], BranchingHeuristic branchingHeuristic,
+            TranspositionTable transpositionTable, SolveControl control) {
+        this.state = state;
+        this.domains = domains;
+        this.choices = new int[domains.length];
+        this.branchingHeuristic = branchingHeuristic;
+        this.transpositionTable = transpositionTable;
+        this.control = control;
+        this.stackCells = new int[domains.length];
+        this.stackEntries = new int[domains.length];
+        this.stackNumbers = new byte[domains.length];
+        Arrays.fill(this.choices, -1);
+    }
+
+    Search(Search other) {
+        this(other, new GameState(other.state), other.control);
+        this.symmetricCell = other.symmetricCell;
+        this.symmetricHash = other.symmetricHash;
+        this.symmetricEntryHash = other.symmetricEntryHash;
+        this.symmetricDuplicates = other.symmetricDuplicates;
+    }
+
+    private Search(Search other, GameState state, SolveControl control) {
+        this.state = state;
+        this.domains = other.domains;
+        this.choices = Arrays.copyOf(other.choices, other.choices.length);
+        this.branchingHeuristic = other.branchingHeuristic;
+        this.transpositionTable = other.transpositionTable;
+        this.control = control;
+        this.stackCells = new int[this.domains.length];
+        this.stackEntries = new int[this.domains.length];
+        this.stackNumbers = new byte[this.domains.length];
+    }
+
+    Search restrict(long cells[], SolveControl control) {
+        return new Search(this, new GameState(this.state, cells), control);
+    }
+
+    GameState getState() {
+        return this.state;
+    }
+
+    SolveControl getControl() {
+        return this.control;
+    }
+
+    TranspositionTable getTranspositionTable() {
+        return this.transpositionTable;
+    }
+
+    CellDomain getDomain(int cell) {
+        return this.domains[cell];
+    }
+
+    int[] getChoices() {
+        return this.choices;
+    }
+
+    int selectCell() {
+        if (this.symmetricCell != -1 && this.state.getHash() == this.symmetricHash) {
+            return this.symmetricCell;
+        }
+        return this.branchingHeuristic.selectCell(this.state, this.domains);
+    }
+
+    // The symmetric cell's own number is left out of the hash compared: the sequential search has already cleared it
+    // when trying the entries, the parallel one has not.
+    boolean isViable(int cell, int entry) {
+        if (cell == this.symmetricCell
+                && (this.state.getHash() ^ Zobrist.number(cell, this.state.getNumber(cell))) == this.symmetricEntryHash
+                && this.symmetricDuplicates.get(entry)) {
+            ++this.symmetricEntries;
+            return false;
+        }
+        CellDomain domain = this.domains[cell];
+        if (!this.state.isEveryWrongCellReachable(domain.getMasks(), domain.getMaskOffset(entry))) {
+            ++this.inviableEntries;
+            return false;
+        }
+        return true;
+    }
+
+    void assign(int cell, int entry) {
+        CellDomain domain = this.domains[cell];
+        if (this.choices[cell] == -1) {
+            this.state.setNumber(cell, 0);
+        }
+        this.state.toggle(domain.getMasks(), domain.getMaskOffset(entry), domain.getHash(entry));
+        this.choices[cell] = entry;
+    }
+
+    // If the remaining puzzle is mapped onto itself by some board symmetries, a cell those symmetries also map onto
+    // itself only needs to try one entry out of each set of entries they map onto each other: a solution using one of
+    // them maps to a solution using any other. The search therefore branches on such a cell first.
+    void breakSymmetries() {
+        if (this.state.isSolved() || !this.state.isEveryWrongCellReachable()) {
+            return;
+        }
+        List<int[]> automorphisms = this.findAutomorphisms();
+        if (automorphisms.isEmpty()) {
+            return;
+        }
+        int cell = this.selectCell();
+        if (cell == -1 || this.countFixing(automorphisms, cell) == 0) {
+            cell = -1;
+            for (int c = this.state.nextWaveable(0); c != -1; c = this.state.nextWaveable(c + 1)) {
+                int fixing = this.countFixing(automorphisms, c);
+                if (fixing != 0 && (cell == -1 || this.countFixing(automorphisms, cell) < fixing
+                        || (this.countFixing(automorphisms, cell) == fixing
+                                && this.domains[cell].size() < this.domains[c].size()))) {
+                    cell = c;
+                }
+            }
+            if (cell == -1) {
+                return;
+            }
+        }
+        int root = cell;
+        automorphisms.removeIf(permutation -> permutation[root] != root);
+        CellDomain domain = this.domains[cell];
+        int words = this.state.getWaveTable().getWordCount();
+        Map<Mask, Integer> entries = new HashMap<>();
+        for (int i = 0; i < domain.size(); ++i) {
+            int offset = domain.getMaskOffset(i);
+            entries.put(new Mask(Arrays.copyOfRange(domain.getMasks(), offset, offset + words)), i);
+        }
+        BitSet duplicates = new BitSet(domain.size());
+        for (int i = 0; i < domain.size(); ++i) {
+            for (int permutation[] : automorphisms) {
+                long image[] = new long[words];
+                for (int c = GameState.nextSetBit(domain.getMasks(), domain.getMaskOffset(i) << 6); c != -1
+                        && c < domain.getMaskOffset(i + 1) << 6; c = GameState.nextSetBit(domain.getMasks(), c + 1)) {
+                    int p = permutation[c - (domain.getMaskOffset(i) << 6)];
+                    image[p >>> 6] |= 1L << p;
+                }
+                Integer j = entries.get(new Mask(image));
+                if (j != null && j < i) {
+                    duplicates.set(i);
+                    break;
+                }
+            }
+        }
+        if (duplicates.isEmpty()) {
+            return;
+        }
+        this.symmetricCell = cell;
+        this.symmetricHash = this.state.getHash();
+        this.symmetricEntryHash = this.symmetricHash ^ Zobrist.number(cell, this.state.getNumber(cell));
+        this.symmetricDuplicates = duplicates;
+    }
+
+    private int countFixing(List<int[]> automorphisms, int cell) {
+        int count = 0;
+        for (int permutation[] : automorphisms) {
+            if (permutation[cell] == cell) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private List<int[]> findAutomorphisms() {
+        int width = this.state.getWidth();
+        int height = this.state.getHeight();
+        List<int[]> automorphisms = new ArrayList<>();
+        for (Symmetry symmetry : Symmetry.values()) {
+            if (symmetry == Symmetry.IDENTITY || (symmetry.isTransposing() && width != height)) {
+                continue;
+            }
+            int permutation[] = new int[this.state.getCellCount()];
+            boolean invariant = true;
+            for (int cell = 0; cell < permutation.length && invariant; ++cell) {
+                int image = permutation[cell] = symmetry.getCell(cell, width, height);
+                invariant = this.state.isNone(cell) == this.state.isNone(image)
+                        && this.state.isCorrect(cell) == this.state.isCorrect(image)
+                        && this.state.getNumber(cell) == this.state.getNumber(image);
+            }
+            if (invariant) {
+                automorphisms.add(permutation);
+            }
+        }
+        return automorphisms;
+    }
+
+    boolean solve() {
+        return this.solve(0);
+    }
+
+    boolean solve(int depth) {
+        boolean solved = this.search(depth);
+        this.flushStatistics();
+        return solved;
+    }
+
+    boolean next() {
+        boolean found = this.enumerate();
+        this.flushStatistics();
+        return found;
+    }
+
+    boolean solveMinimal(Solver.Objective objective) {
+        boolean solved = this.deepen(objective);
+        this.flushStatistics();
+        return solved;
+    }
+
+    long count(long limit) {
+        long count = this.count(limit, new HashMap<>());
+        this.flushStatistics();
+        return count;
+    }
+
+    void flushStatistics() {
+        this.control.addNodes(this.nodes & SolveControl.POLL_INTERVAL - 1);
+        this.nodes = 0;
+        this.control.addStatistics(this.unreachablePrunes, this.transpositionHits, this.inviableEntries,
+                this.symmetricEntries, this.maxDepth);
+        this.unreachablePrunes = this.transpositionHits = this.inviableEntries = this.symmetricEntries = 0;
+        this.maxDepth = 0;
+    }
+
+    // Depth-first search over the domain entries of the selected cells. Every open level keeps its cell, its current
+    // entry and the number the cell had before, so backtracking only needs these primitive stacks.
+    private boolean search(int baseDepth) {
+        int depth = 0;
+        boolean enter = true;
+        for (;;) {
+            if (enter) {
+                this.maxDepth = Math.max(this.maxDepth, baseDepth + depth);
+                if ((++this.nodes & SolveControl.POLL_INTERVAL - 1) == 0
+                        && this.control.poll(SolveControl.POLL_INTERVAL, baseDepth + depth)) {
+                    return false;
+                } else if (!this.state.isEveryWrongCellReachable()) {
+                    ++this.unreachablePrunes;
+                } else if (this.state.isSolved()) {
+                    return true;
+                } else if (this.transpositionTable != null && this.transpositionTable.contains(this.state.getHash())) {
+                    ++this.transpositionHits;
+                } else {
+                    this.push(depth++);
+                }
+            }
+            if (depth == 0) {
+                return false;
+            }
+            int cell = this.stackCells[depth - 1];
+            if (this.advance(depth - 1)) {
+                enter = true;
+            } else {
+                this.choices[cell] = -1;
+                this.state.setNumber(cell, this.stackNumbers[--depth]);
+                if (this.transpositionTable != null) {
+                    this.transpositionTable.add(this.state.getHash(), this.state.getWaveableCount());
+                }
+                enter = false;
+            }
+        }
+    }
+
+    // Resumable variant of search that goes on past solutions, each call returning with the next assignment solving
+    // the puzzle in choices. Solved states with cells left are branched on as well, as the entries of the remaining
+    // cells may cancel each other out. A state is only added to the transposition table if no solution was below it:
+    // the bottom solvedDepth open levels are known to lead to one.
+    private boolean enumerate() {
+        int depth = Math.max(this.openDepth, 0);
+        boolean enter = this.openDepth == -1;
+        for (;;) {
+            if (enter) {
+                this.maxDepth = Math.max(this.maxDepth, depth);
+                if ((++this.nodes & SolveControl.POLL_INTERVAL - 1) == 0
+                        && this.control.poll(SolveControl.POLL_INTERVAL, depth)) {
+                    this.openDepth = 0;
+                    return false;
+                } else if (!this.state.isEveryWrongCellReachable()) {
+                    ++this.unreachablePrunes;
+                } else if (this.state.isSolved() && this.state.nextWaveable(0) == -1) {
+                    this.openDepth = this.solvedDepth = depth;
+                    return true;
+                } else if (this.transpositionTable != null && this.transpositionTable.contains(this.state.getHash())) {
+                    ++this.transpositionHits;
+                } else {
+                    this.push(depth++);
+                }
+            }
+            if (depth == 0) {
+                this.openDepth = 0;
+                return false;
+            }
+            int cell = this.stackCells[depth - 1];
+            if (this.advance(depth - 1)) {
+                enter = true;
+            } else {
+                this.choices[cell] = -1;
+                this.state.setNumber(cell, this.stackNumbers[--depth]);
+                if (this.transpositionTable != null && this.solvedDepth <= depth) {
+                    this.transpositionTable.add(this.state.getHash(), this.state.getWaveableCount());
+                }
+                this.solvedDepth = Math.min(this.solvedDepth, depth);
+                enter = false;
+            }
+        }
+    }
+
+    // Counts the assignments solving the puzzle, stopping at limit. The count below a state only depends on its wrong
+    // cells and remaining numbers, which its hash stands for, so counts of finished states are memoised by hash.
+    // counts[0] is the total and counts[d + 1] sums up the states below open level d. If the search is stopped, the
+    // solutions counted so far are returned.
+    private long count(long limit, Map<Long, Long> memo) {
+        long counts[] = new long[this.domains.length + 1];
+        int depth = 0;
+        boolean enter = true;
+        for (;;) {
+            if (enter) {
+                this.maxDepth = Math.max(this.maxDepth, depth);
+                Long count;
+                if ((++this.nodes & SolveControl.POLL_INTERVAL - 1) == 0
+                        && this.control.poll(SolveControl.POLL_INTERVAL, depth)) {
+                    long total = 0;
+                    for (int d = 0; d <= depth; ++d) {
+                        total = add(total, counts[d], limit);
+                    }
+                    return total;
+                } else if (!this.state.isEveryWrongCellReachable()) {
+                    ++this.unreachablePrunes;
+                } else if (this.state.isSolved() && this.state.nextWaveable(0) == -1) {
+                    counts[depth] = add(counts[depth], 1, limit);
+                } else if ((count = memo.get(this.state.getHash())) != null) {
+                    ++this.transpositionHits;
+                    counts[depth] = add(counts[depth], count, limit);
+                } else {
+                    counts[depth + 1] = 0;
+                    this.push(depth++);
+                }
+            }
+            if (depth == 0) {
+                return counts[0];
+            }
+            int cell = this.stackCells[depth - 1];
+            if (counts[depth] < limit && this.advance(depth - 1)) {
+                enter = true;
+            } else {
+                this.retract(depth - 1);
+                this.choices[cell] = -1;
+                this.state.setNumber(cell, this.stackNumbers[--depth]);
+                if (memo.size() < MAX_MEMOISED_COUNTS) {
+                    memo.put(this.state.getHash(), counts[depth + 1]);
+                }
+                counts[depth] = add(counts[depth], counts[depth + 1], limit);
+                enter = false;
+            }
+        }
+    }
+
+    // Iterative deepening A*: depth-first searches that only enter states whose cost so far plus a lower bound on the
+    // remaining cost is within a bound. Each failed search raises the bound to the least such sum that exceeded it,
+    // so the first solution found costs the least. Failed states keep the raised bound on their remaining cost in
+    // the transposition table, where a later iteration picks it up.
+    private boolean deepen(Solver.Objective objective) {
+        this.objective = objective;
+        this.coverages = new int[this.domains.length][];
+        int maxCoverage = 0;
+        for (int cell = this.state.nextWaveable(0); cell != -1; cell = this.state.nextWaveable(cell + 1)) {
+            this.coverages[cell] = this.getCoverages(cell);
+            for (int coverage : this.coverages[cell]) {
+                maxCoverage = Math.max(maxCoverage, coverage);
+            }
+        }
+        this.slotCounts = new int[maxCoverage + 1];
+        for (int cell = this.state.nextWaveable(0); cell != -1; cell = this.state.nextWaveable(cell + 1)) {
+            this.addSlots(cell, 1);
+        }
+        this.stackCosts = new int[this.domains.length];
+        this.stackMinimums = new int[this.domains.length];
+        for (int bound = 0; bound != INFINITE_COST; bound = this.nextBound) {
+            if (this.deepen(bound)) {
+                return true;
+            } else if (this.control.isStopped()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private boolean deepen(int bound) {
+        int depth = 0;
+        int cost = 0;
+        boolean enter = true;
+        for (;;) {
+            if (enter) {
+                this.maxDepth = Math.max(this.maxDepth, depth);
+                int minimum = INFINITE_COST;
+                if ((++this.nodes & SolveControl.POLL_INTERVAL - 1) == 0
+                        && this.control.poll(SolveControl.POLL_INTERVAL, depth)) {
+                    return false;
+                } else if (!this.state.isEveryWrongCellReachable()) {
+                    ++this.unreachablePrunes;
+                } else if (this.state.isSolved() && cost <= bound) {
+                    return true;
+                } else if (this.state.isSolved()) {
+                    minimum = cost;
+                } else {
+                    int stored = this.transpositionTable == null ? 0
+                            : this.transpositionTable.getBound(this.state.getHash());
+                    int remaining = Math.max(this.getLowerBound(), stored);
+                    if (stored == TranspositionTable.UNSOLVABLE) {
+                        ++this.transpositionHits;
+                    } else if (remaining != INFINITE_COST && cost + remaining <= bound) {
+                        this.stackCosts[depth] = cost;
+                        this.stackMinimums[depth] = INFINITE_COST;
+                        this.addSlots(this.push(depth++), -1);
+                        minimum = -1;
+                    } else if (remaining != INFINITE_COST) {
+                        minimum = cost + remaining;
+                    }
+                }
+                if (minimum != -1) {
+                    this.reportMinimum(depth, minimum);
+                }
+            }
+            if (depth == 0) {
+                return false;
+            }
+            int cell = this.stackCells[depth - 1];
+            if (this.advance(depth - 1)) {
+                CellDomain domain = this.domains[cell];
+                cost = this.stackCosts[depth - 1] + this.getCost(domain, this.stackEntries[depth - 1]);
+                enter = true;
+            } else {
+                this.choices[cell] = -1;
+                this.state.setNumber(cell, this.stackNumbers[--depth]);
+                this.addSlots(cell, 1);
+                int minimum = this.stackMinimums[depth];
+                if (this.transpositionTable != null) {
+                    this.transpositionTable.add(this.state.getHash(), this.state.getWaveableCount(),
+                            minimum == INFINITE_COST ? TranspositionTable.UNSOLVABLE
+                                    : Math.min(minimum - this.stackCosts[depth], TranspositionTable.UNSOLVABLE - 1));
+                }
+                this.reportMinimum(depth, minimum);
+                enter = false;
+            }
+        }
+    }
+
+    private void reportMinimum(int depth, int minimum) {
+        if (depth == 0) {
+            this.nextBound = minimum;
+        } else {
+            this.stackMinimums[depth - 1] = Math.min(this.stackMinimums[depth - 1], minimum);
+        }
+    }
+
+    private int getCost(CellDomain domain, int entry) {
+        return switch (this.objective) {
+            case FEWEST_WAVES -> domain.getWaveCount(entry);
+            case FEWEST_USED_NUMBERS -> domain.getWaveCount(entry) == 0 ? 0 : 1;
+            case ANY -> 0;
+        };
+    }
+
+    // The most cells each unit of cost of a cell can switch: a wave switches at most one cell more than the number it
+    // is sent with, and the waves of a cell together switch at most as many cells as its largest domain entry.
+    private int[] getCoverages(int cell) {
+        int number = this.state.getNumber(cell);
+        if (this.objective == Solver.Objective.FEWEST_WAVES) {
+            int coverages[] = new int[number];
+            for (int i = 0; i < number; ++i) {
+                coverages[i] = number + 1 - i;
+            }
+            return coverages;
+        }
+        CellDomain domain = this.domains[cell];
+        int words = this.state.getWaveTable().getWordCount();
+        int coverage = 0;
+        for (int entry = 0; entry < domain.size(); ++entry) {
+            int count = 0;
+            for (int i = 0; i < words; ++i) {
+                count += Long.bitCount(domain.getMasks()[domain.getMaskOffset(entry) + i]);
+            }
+            coverage = Math.max(coverage, count);
+        }
+        return new int[] { coverage };
+    }
+
+    private void addSlots(int cell, int count) {
+        for (int coverage : this.coverages[cell]) {
+            this.slotCounts[coverage] += count;
+        }
+    }
+
+    // Admissible as no unit of cost switches more cells than its coverage: the wrong cells need at least as many units
+    // as it takes the best remaining coverages to add up to their count.
+    private int getLowerBound() {
+        int wrong = this.state.getWrongCount();
+        int bound = 0;
+        for (int coverage = this.slotCounts.length - 1; 0 < wrong && 0 < coverage; --coverage) {
+            int slots = Math.min(this.slotCounts[coverage], (wrong + coverage - 1) / coverage);
+            bound += slots;
+            wrong -= slots * coverage;
+        }
+        return wrong <= 0 ? bound : INFINITE_COST;
+    }
+
+    private int push(int depth) {
+        int cell = this.selectCell();
+        this.stackCells[depth] = cell;
+        this.stackEntries[depth] = -1;
+        this.stackNumbers[depth] = (byte) this.state.getNumber(cell);
+        this.state.setNumber(cell, 0);
+        return cell;
+    }
+
+    // Moves open level depth on to its next viable entry. Returns false with the level's entry undone if there is none.
+    private boolean advance(int depth) {
+        int cell = this.stackCells[depth];
+        CellDomain domain = this.domains[cell];
+        int entry = this.stackEntries[depth];
+        this.retract(depth);
+        do {
+            ++entry;
+        } while (entry < domain.size() && !this.isViable(cell, entry));
+        if (entry == domain.size()) {
+            return false;
+        }
+        this.state.toggle(domain.getMasks(), domain.getMaskOffset(entry), domain.getHash(entry));
+        this.choices[cell] = entry;
+        this.stackEntries[depth] = entry;
+        return true;
+    }
+
+    private void retract(int depth) {
+        int entry = this.stackEntries[depth];
+        if (entry != -1) {
+            CellDomain domain = this.domains[this.stackCells[depth]];
+            this.state.toggle(domain.getMasks(), domain.getMaskOffset(entry), domain.getHash(entry));
+            this.stackEntries[depth] = -1;
+        }
+    }
+
+    private static long add(long a, long b, long limit) {
+        return limit - a <= b ? limit : a + b;
+    }
+}
@@ -0,0 +1,11 @@
+package dev.nicotopia.wms;
+
+import java.util.List;
+
+import dev.nicotopia.wms.Game.Direction;
+
+public interface Solution {
+    public Solver.Outcome getOutcome();
+
+    public List<Direction> getCellDirections(int x, int y);
+}
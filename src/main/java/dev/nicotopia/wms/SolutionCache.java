@@ -0,0 +1,333 @@
+package dev.nicotopia.wms;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import dev.nicotopia.wms.Game.Direction;
+
+public class SolutionCache implements AutoCloseable {
+    private static final int MAGIC = 0x574d5343;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int INITIAL_MAPPED_BYTES = 1 << 20;
+    private static final int WAVES_PER_WORD = Long.SIZE / 2;
+    private static final Direction DIRECTIONS[] = Direction.values();
+    private static final Solver.Outcome OUTCOMES[] = Solver.Outcome.values();
+
+    private record Key(byte[] bytes, long hash) {
+        Key(byte bytes[]) {
+            this(bytes, hash(bytes));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && this.hash == k.hash && Arrays.equals(this.bytes, k.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.hash);
+        }
+
+        private static long hash(byte bytes[]) {
+            long hash = bytes.length;
+            for (byte b : bytes) {
+                hash = Zobrist.mix(hash ^ b);
+            }
+            return hash;
+        }
+    }
+
+    private static class CachedSolution implements Solution {
+        private final Solver.Outcome outcome;
+        private final int width;
+        private final byte waveCounts[];
+        // The directions of each cell's waves, two bits each, in as many words as its wave count needs.
+        private final long directions[][];
+
+        CachedSolution(Solver.Outcome outcome, int width, byte waveCounts[], long directions[][]) {
+            this.outcome = outcome;
+            this.width = width;
+            this.waveCounts = waveCounts;
+            this.directions = directions;
+        }
+
+        @Override
+        public Solver.Outcome getOutcome() {
+            return this.outcome;
+        }
+
+        @Override
+        public List<Direction> getCellDirections(int x, int y) {
+            if (this.waveCounts.length == 0) {
+                return Collections.emptyList();
+            }
+            int cell = y * this.width + x;
+            List<Direction> dirs = new ArrayList<>(this.waveCounts[cell]);
+            for (int wave = 0; wave < this.waveCounts[cell]; ++wave) {
+                dirs.add(DIRECTIONS[(int) (this.directions[cell][wave / WAVES_PER_WORD] >>> 2 * wave) & 3]);
+            }
+            return Collections.unmodifiableList(dirs);
+        }
+    }
+
+    private record OrientedSolution(CachedSolution solution, Symmetry symmetry, int width, int height)
+            implements Solution {
+        @Override
+        public Solver.Outcome getOutcome() {
+            return this.solution.outcome;
+        }
+
+        @Override
+        public List<Direction> getCellDirections(int x, int y) {
+            List<Direction> dirs = new ArrayList<>(this.solution.getCellDirections(
+                    this.symmetry.getX(x, y, this.width, this.height), this.symmetry.getY(x, y, this.width, this.height)));
+            dirs.replaceAll(this.symmetry.inverse()::getDirection);
+            return Collections.unmodifiableList(dirs);
+        }
+    }
+
+    private final int memoryEntries;
+    private final Map<Key, CachedSolution> memory;
+    private final Map<Long, Integer> offsets = new HashMap<>();
+    private final FileChannel channel;
+    private final FileLock lock;
+    private MappedByteBuffer buffer;
+    private int end;
+
+    public SolutionCache(int memoryEntries) {
+        this.memoryEntries = memoryEntries;
+        this.memory = this.createMemory();
+        this.channel = null;
+        this.lock = null;
+    }
+
+    public SolutionCache(Path file, int memoryEntries) throws IOException {
+        this.memoryEntries = memoryEntries;
+        this.memory = this.createMemory();
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            this.lock = this.channel.tryLock();
+            if (this.lock == null) {
+                throw new IOException(file + " is in use by another process");
+            }
+            long size = this.channel.size();
+            if (Integer.MAX_VALUE < size) {
+                throw new IOException(file + " is too large");
+            }
+            this.map((int) Math.max(size, INITIAL_MAPPED_BYTES));
+            if (size == 0) {
+                this.buffer.putInt(0, MAGIC);
+                this.buffer.putInt(Integer.BYTES, VERSION);
+            } else if (size < HEADER_BYTES || this.buffer.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a solution cache");
+            } else if (this.buffer.getInt(Integer.BYTES) != VERSION) {
+                throw new IOException(file + " has unsupported version " + this.buffer.getInt(Integer.BYTES));
+            }
+            this.end = HEADER_BYTES;
+            // A record's length is written last, so a record cut short by a crash reads as the end of the file.
+            for (int length; this.end + Integer.BYTES <= this.buffer.capacity()
+                    && 0 < (length = this.buffer.getInt(this.end))
+                    && length <= this.buffer.capacity() - this.end - Integer.BYTES; this.end += Integer.BYTES + length) {
+                this.offsets.put(Key.hash(this.readKey(this.end)), this.end);
+            }
+        } catch (IOException | RuntimeException ex) {
+            this.channel.close();
+            throw ex;
+        }
+    }
+
+    public synchronized Optional<Solution> get(Game game) {
+        Symmetry symmetry = Symmetry.canonical(game);
+        Key key = new Key(encode(game, symmetry));
+        CachedSolution solution = this.memory.get(key);
+        if (solution == null) {
+            Integer offset = this.offsets.get(key.hash);
+            if (offset == null || !Arrays.equals(key.bytes, this.readKey(offset))) {
+                return Optional.empty();
+            }
+            solution = this.readSolution(offset, key.bytes.length);
+            this.memory.put(key, solution);
+        }
+        return Optional.of(new OrientedSolution(solution, symmetry, game.getWidth(), game.getHeight()));
+    }
+
+    public synchronized void put(Game game, Solution solution) {
+        if (solution.getOutcome() != Solver.Outcome.SOLVED && solution.getOutcome() != Solver.Outcome.UNSOLVABLE) {
+            throw new IllegalArgumentException("Only finished solves can be cached");
+        }
+        Symmetry symmetry = Symmetry.canonical(game);
+        Key key = new Key(encode(game, symmetry));
+        CachedSolution cached = toCached(game, symmetry, solution);
+        this.memory.put(key, cached);
+        if (this.channel != null) {
+            Integer offset = this.offsets.get(key.hash);
+            if (offset == null || !Arrays.equals(key.bytes, this.readKey(offset))) {
+                this.append(key, cached);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return this.channel == null ? this.memory.size() : this.offsets.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.channel != null && this.channel.isOpen()) {
+            this.buffer.force();
+            this.lock.release();
+            this.channel.close();
+        }
+    }
+
+    private Map<Key, CachedSolution> createMemory() {
+        if (this.memoryEntries < 0) {
+            throw new IllegalArgumentException("Memory entry count must not be negative");
+        }
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedSolution> eldest) {
+                return SolutionCache.this.memoryEntries < this.size();
+            }
+        };
+    }
+
+    private void map(int capacity) throws IOException {
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private byte[] readKey(int offset) {
+        byte key[] = new byte[this.buffer.getInt(offset + Integer.BYTES)];
+        this.buffer.get(offset + 2 * Integer.BYTES, key);
+        return key;
+    }
+
+    private CachedSolution readSolution(int offset, int keyLength) {
+        int pos = offset + 2 * Integer.BYTES + keyLength;
+        Solver.Outcome outcome = OUTCOMES[this.buffer.get(pos++)];
+        int width = this.buffer.getShort(pos);
+        int cellCount = this.buffer.getInt(pos + Short.BYTES);
+        pos += Short.BYTES + Integer.BYTES;
+        byte waveCounts[] = new byte[cellCount];
+        long directions[][] = new long[cellCount][];
+        for (int cell = 0; cell < cellCount; ++cell) {
+            waveCounts[cell] = this.buffer.get(pos++);
+            directions[cell] = new long[wordCount(waveCounts[cell])];
+            for (int i = 0; i < directions[cell].length; ++i) {
+                directions[cell][i] = this.buffer.getLong(pos);
+                pos += Long.BYTES;
+            }
+        }
+        return new CachedSolution(outcome, width, waveCounts, directions);
+    }
+
+    private void append(Key key, CachedSolution solution) {
+        int directionBytes = 0;
+        for (byte waveCount : solution.waveCounts) {
+            directionBytes += 1 + wordCount(waveCount) * Long.BYTES;
+        }
+        long length = Integer.BYTES + key.bytes.length + 1 + Short.BYTES + Integer.BYTES + directionBytes;
+        long required = this.end + Integer.BYTES + length + Integer.BYTES;
+        if (Integer.MAX_VALUE < required) {
+            return;
+        }
+        try {
+            if (this.buffer.capacity() < required) {
+                this.map((int) Math.min(Integer.MAX_VALUE, Math.max(required, 2L * this.buffer.capacity())));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        int pos = this.end + Integer.BYTES;
+        this.buffer.putInt((int) (pos + length), 0);
+        this.buffer.putInt(pos, key.bytes.length);
+        this.buffer.put(pos + Integer.BYTES, key.bytes);
+        pos += Integer.BYTES + key.bytes.length;
+        this.buffer.put(pos++, (byte) solution.outcome.ordinal());
+        this.buffer.putShort(pos, (short) solution.width);
+        this.buffer.putInt(pos + Short.BYTES, solution.waveCounts.length);
+        pos += Short.BYTES + Integer.BYTES;
+        for (int cell = 0; cell < solution.waveCounts.length; ++cell) {
+            this.buffer.put(pos++, solution.waveCounts[cell]);
+            for (long word : solution.directions[cell]) {
+                this.buffer.putLong(pos, word);
+                pos += Long.BYTES;
+            }
+        }
+        this.buffer.putInt(this.end, (int) length);
+        this.offsets.put(key.hash, this.end);
+        this.end = pos;
+    }
+
+    private static CachedSolution toCached(Game game, Symmetry symmetry, Solution solution) {
+        int width = game.getWidth();
+        int height = game.getHeight();
+        int canonicalWidth = symmetry.getWidth(width, height);
+        if (solution.getOutcome() != Solver.Outcome.SOLVED) {
+            return new CachedSolution(solution.getOutcome(), canonicalWidth, new byte[0], new long[0][]);
+        }
+        byte waveCounts[] = new byte[width * height];
+        long directions[][] = new long[waveCounts.length][];
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                int cell = symmetry.getY(x, y, width, height) * canonicalWidth + symmetry.getX(x, y, width, height);
+                List<Direction> dirs = solution.getCellDirections(x, y);
+                if (Byte.MAX_VALUE < dirs.size()) {
+                    throw new IllegalArgumentException("Too many waves on one cell to cache");
+                }
+                waveCounts[cell] = (byte) dirs.size();
+                directions[cell] = new long[wordCount(dirs.size())];
+                for (int wave = 0; wave < dirs.size(); ++wave) {
+                    directions[cell][wave / WAVES_PER_WORD] |= (long) symmetry.getDirection(dirs.get(wave)).ordinal()
+                            << 2 * wave;
+                }
+            }
+        }
+        return new CachedSolution(solution.getOutcome(), canonicalWidth, waveCounts, directions);
+    }
+
+    private static int wordCount(int waveCount) {
+        return (waveCount + WAVES_PER_WORD - 1) / WAVES_PER_WORD;
+    }
+
+    // Games are stored in their canonical orientation and by their target colors rather than the split settings that
+    // produce them, so mirrored and transposed games and games with equivalent splits share a key.
+    private static byte[] encode(Game game, Symmetry symmetry) {
+        int width = game.getWidth();
+        int height = game.getHeight();
+        int canonicalWidth = symmetry.getWidth(width, height);
+        int canonicalHeight = symmetry.getHeight(width, height);
+        Symmetry inverse = symmetry.inverse();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(canonicalWidth);
+            out.writeShort(canonicalHeight);
+            for (int y = 0; y < canonicalHeight; ++y) {
+                for (int x = 0; x < canonicalWidth; ++x) {
+                    out.writeInt(Symmetry.cellKey(game, inverse.getX(x, y, canonicalWidth, canonicalHeight),
+                            inverse.getY(x, y, canonicalWidth, canonicalHeight)));
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,110 @@
+package dev.nicotopia.wms;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+class SolveControl {
+    static final int POLL_INTERVAL = 1 << 10;
+
+    private final SolveControl parent;
+    private final AtomicBoolean stop = new AtomicBoolean();
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong nextProgress;
+    private final long start = System.nanoTime();
+    private final long deadline;
+    private final long nodeBudget;
+    private final Solver.ProgressListener progressListener;
+    private final long progressInterval;
+    private final LongAdder unreachablePrunes = new LongAdder();
+    private final LongAdder transpositionHits = new LongAdder();
+    private final LongAdder inviableEntries = new LongAdder();
+    private final LongAdder symmetricEntries = new LongAdder();
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    private volatile Solver.Outcome stopReason;
+
+    SolveControl(long timeoutNanos, long nodeBudget, Solver.ProgressListener progressListener,
+            long progressIntervalNanos) {
+        this.parent = null;
+        this.deadline = timeoutNanos == 0 ? 0 : this.start + timeoutNanos;
+        this.nodeBudget = nodeBudget == 0 ? Long.MAX_VALUE : nodeBudget;
+        this.progressListener = progressListener;
+        this.progressInterval = progressIntervalNanos;
+        this.nextProgress = new AtomicLong(this.start + progressIntervalNanos);
+    }
+
+    // A child control can be stopped on its own but shares its parent's node count, limits and stop.
+    SolveControl(SolveControl parent) {
+        this.parent = parent;
+        this.deadline = 0;
+        this.nodeBudget = Long.MAX_VALUE;
+        this.progressListener = null;
+        this.progressInterval = 0;
+        this.nextProgress = null;
+    }
+
+    boolean isStopped() {
+        return this.stop.get() || (this.parent != null && this.parent.isStopped());
+    }
+
+    Solver.Outcome getStopReason() {
+        return this.stop.get() || this.parent == null ? this.stopReason : this.parent.getStopReason();
+    }
+
+    void stop(Solver.Outcome reason) {
+        if (this.stop.compareAndSet(false, true)) {
+            this.stopReason = reason;
+        }
+    }
+
+    long getNodeCount() {
+        return this.parent == null ? this.nodes.get() : this.parent.getNodeCount();
+    }
+
+    void addNodes(long count) {
+        if (this.parent != null) {
+            this.parent.addNodes(count);
+        } else {
+            this.nodes.addAndGet(count);
+        }
+    }
+
+    void addStatistics(long unreachablePrunes, long transpositionHits, long inviableEntries, long symmetricEntries,
+            int maxDepth) {
+        if (this.parent != null) {
+            this.parent.addStatistics(unreachablePrunes, transpositionHits, inviableEntries, symmetricEntries, maxDepth);
+        } else {
+            this.unreachablePrunes.add(unreachablePrunes);
+            this.transpositionHits.add(transpositionHits);
+            this.inviableEntries.add(inviableEntries);
+            this.symmetricEntries.add(symmetricEntries);
+            this.maxDepth.accumulate(maxDepth);
+        }
+    }
+
+    SolverStatistics getStatistics(long setupNanos, long searchNanos) {
+        return new SolverStatistics(this.nodes.get(), this.unreachablePrunes.sum(), this.transpositionHits.sum(),
+                this.inviableEntries.sum(), this.symmetricEntries.sum(), (int) this.maxDepth.get(), setupNanos,
+                searchNanos);
+    }
+
+    boolean poll(long count, int depth) {
+        if (this.parent != null) {
+            return this.parent.poll(count, depth) || this.stop.get();
+        }
+        long total = this.nodes.addAndGet(count);
+        long now = System.nanoTime();
+        if (this.nodeBudget <= total) {
+            this.stop(Solver.Outcome.NODE_BUDGET_EXHAUSTED);
+        } else if (this.deadline != 0 && 0 <= now - this.deadline) {
+            this.stop(Solver.Outcome.TIMED_OUT);
+        }
+        long next = this.nextProgress.get();
+        if (this.progressListener != null && 0 <= now - next
+                && this.nextProgress.compareAndSet(next, now + this.progressInterval)) {
+            this.progressListener.onProgress(total, depth, total * 1e9 / Math.max(1, now - this.start));
+        }
+        return this.stop.get();
+    }
+}
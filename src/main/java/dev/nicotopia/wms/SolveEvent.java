@@ -0,0 +1,48 @@
+package dev.nicotopia.wms;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("dev.nicotopia.wms.Solve")
+@Label("Solve")
+@Category("Wave Mechanics Solver")
+@Description("An instrumented Solver.solve call")
+class SolveEvent extends Event {
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Strategy")
+    String strategy;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Unreachable Prunes")
+    long unreachablePrunes;
+
+    @Label("Transposition Hits")
+    long transpositionHits;
+
+    @Label("Inviable Entries")
+    long inviableEntries;
+
+    @Label("Symmetric Entries")
+    long symmetricEntries;
+
+    @Label("Max Depth")
+    int maxDepth;
+
+    @Label("Setup Duration")
+    @Timespan
+    long setupDuration;
+}
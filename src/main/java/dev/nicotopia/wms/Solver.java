@@ -1,102 +1,512 @@
 package dev.nicotopia.wms;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.Stack;
-import java.util.stream.IntStream;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import dev.nicotopia.wms.Game.Color;
 import dev.nicotopia.wms.Game.Direction;
 
-public class Solver {
-    private record Position(int x, int y) {
+public class Solver implements Solution {
+    public enum Strategy {
+        DEPTH_FIRST, LINEAR_ALGEBRA
     }
 
-    private final Game game;
-    private final Map<Position, Stack<Direction>> steps = new HashMap<>();
-    private final Map<Position, Set<Position>> reachableBy = new HashMap<>();
+    public enum Objective {
+        ANY, FEWEST_WAVES, FEWEST_USED_NUMBERS
+    }
+
+    public enum Outcome {
+        SOLVED, UNSOLVABLE, CANCELLED, TIMED_OUT, NODE_BUDGET_EXHAUSTED
+    }
+
+    public interface ProgressListener {
+        public void onProgress(long nodes, int depth, double nodesPerSecond);
+    }
+
+    // Counts that reached the limit or were stopped are not exact. A stopped count is 0.
+    public record SolutionCount(long count, boolean exact) {
+        public boolean isUnique() {
+            return this.exact && this.count == 1;
+        }
+    }
+
+    private final Symmetry symmetry;
+    private final int width;
+    private final int height;
+    private final GameState state;
+    private final CellDomain domains[];
+    private final int choices[];
+    // Whether every cell has a domain. Otherwise solve sends the waves of the cells without one by one.
+    private final boolean enumerable;
+    private Direction waves[][];
+    private Strategy strategy = Strategy.DEPTH_FIRST;
+    private Objective objective = Objective.ANY;
+    private BranchingHeuristic branchingHeuristic = BranchingHeuristics.MOST_CONSTRAINED_CELL;
+    private int parallelism = 1;
+    private int splitDepth = 2;
+    private long transpositionTableBytes = 1L << 22;
+    private TranspositionTable.ReplacementPolicy replacementPolicy = TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED;
+    private Duration timeout = Duration.ZERO;
+    private long nodeBudget = 0;
+    private ProgressListener progressListener;
+    private Duration progressInterval = Duration.ofMillis(250);
+    private boolean symmetryBreaking = true;
+    private boolean instrumented;
+    private volatile boolean cancelled;
+    private volatile SolveControl control;
+    private Outcome outcome;
+    private long nodeCount;
+    private final long setupNanos;
+    private long tableNanos;
+    private SolverStatistics statistics = SolverStatistics.EMPTY;
+    private SolverSession session;
+    private int sessionGeneration;
 
     public Solver(Game game) {
-        this.game = game.copy();
-        this.positions().forEach(b -> this.reachableBy.put(b,
-                new HashSet<>(this.positions().filter(a -> this.canAReachB(a, b)).toList())));
+        this(game, null, null);
+    }
+
+    // Solves game in the given orientation, or the canonical one if symmetry is null. Domains built earlier for the
+    // same orientation are taken from domains where the number of their cell still matches, and the ones built here
+    // are stored there.
+    Solver(Game game, Symmetry symmetry, CellDomain domains[]) {
+        long start = System.nanoTime();
+        this.symmetry = symmetry == null ? Symmetry.canonical(game) : symmetry;
+        this.width = game.getWidth();
+        this.height = game.getHeight();
+        this.state = new GameState(game, this.symmetry);
+        this.domains = new CellDomain[this.state.getCellCount()];
+        this.choices = new int[this.state.getCellCount()];
+        this.waves = new Direction[this.state.getCellCount()][];
+        boolean enumerable = true;
+        for (int cell = 0; cell < this.domains.length; ++cell) {
+            if (this.state.canWave(cell)) {
+                CellDomain cached = domains == null ? null : domains[cell];
+                if (cached != null && cached.getNumber() == this.state.getNumber(cell)) {
+                    this.domains[cell] = cached;
+                } else {
+                    this.domains[cell] = CellDomain.tryCreate(this.state, cell);
+                    if (domains != null) {
+                        domains[cell] = this.domains[cell];
+                    }
+                }
+                enumerable &= this.domains[cell] != null;
+            }
+        }
+        this.enumerable = enumerable;
+        Arrays.fill(this.choices, -1);
+        this.setupNanos = System.nanoTime() - start;
+    }
+
+    void bind(SolverSession session, int generation) {
+        this.session = session;
+        this.sessionGeneration = generation;
+    }
+
+    public Strategy getStrategy() {
+        return this.strategy;
+    }
+
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public Objective getObjective() {
+        return this.objective;
+    }
+
+    // Any other objective than ANY searches for a solution of least cost using iterative deepening A*, one
+    // component after the other.
+    public void setObjective(Objective objective) {
+        this.objective = objective;
+    }
+
+    public BranchingHeuristic getBranchingHeuristic() {
+        return this.branchingHeuristic;
+    }
+
+    public void setBranchingHeuristic(BranchingHeuristic branchingHeuristic) {
+        this.branchingHeuristic = branchingHeuristic;
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getSplitDepth() {
+        return this.splitDepth;
+    }
+
+    public void setSplitDepth(int splitDepth) {
+        if (splitDepth < 0) {
+            throw new IllegalArgumentException("Split depth must not be negative");
+        }
+        this.splitDepth = splitDepth;
+    }
+
+    public long getTranspositionTableBytes() {
+        return this.transpositionTableBytes;
+    }
+
+    public void setTranspositionTableBytes(long transpositionTableBytes) {
+        if (transpositionTableBytes < 0) {
+            throw new IllegalArgumentException("Transposition table size must not be negative");
+        }
+        this.transpositionTableBytes = transpositionTableBytes;
+    }
+
+    public TranspositionTable.ReplacementPolicy getReplacementPolicy() {
+        return this.replacementPolicy;
+    }
+
+    public void setReplacementPolicy(TranspositionTable.ReplacementPolicy replacementPolicy) {
+        this.replacementPolicy = replacementPolicy;
+    }
+
+    public Duration getTimeout() {
+        return this.timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Timeout must not be negative");
+        }
+        this.timeout = timeout;
+    }
+
+    public long getNodeBudget() {
+        return this.nodeBudget;
+    }
+
+    public void setNodeBudget(long nodeBudget) {
+        if (nodeBudget < 0) {
+            throw new IllegalArgumentException("Node budget must not be negative");
+        }
+        this.nodeBudget = nodeBudget;
+    }
+
+    public Symmetry getSymmetry() {
+        return this.symmetry;
+    }
+
+    public boolean isSymmetryBreaking() {
+        return this.symmetryBreaking;
+    }
+
+    public void setSymmetryBreaking(boolean symmetryBreaking) {
+        this.symmetryBreaking = symmetryBreaking;
+    }
+
+    public boolean isInstrumented() {
+        return this.instrumented;
+    }
+
+    // Instrumented solves also publish their statistics to the SolverMetrics MBean and as dev.nicotopia.wms.Solve JFR
+    // events.
+    public void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+    }
+
+    public void setProgressListener(ProgressListener progressListener, Duration interval) {
+        this.progressListener = progressListener;
+        this.progressInterval = interval;
     }
 
+    public void cancel() {
+        this.cancelled = true;
+        SolveControl control = this.control;
+        if (control != null) {
+            control.stop(Outcome.CANCELLED);
+        }
+    }
+
+    @Override
+    public Outcome getOutcome() {
+        return this.outcome;
+    }
+
+    public long getNodeCount() {
+        return this.nodeCount;
+    }
+
+    public SolverStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    @Override
     public List<Direction> getCellDirections(int x, int y) {
-        List<Direction> l = this.steps.get(new Position(x, y));
-        return l == null ? Collections.emptyList() : Collections.unmodifiableList(l);
+        return this.getCellDirections(this.choices, this.waves, x, y);
+    }
+
+    private List<Direction> getCellDirections(int choices[], Direction waves[][], int x, int y) {
+        int cell = this.state.getCell(this.symmetry.getX(x, y, this.width, this.height),
+                this.symmetry.getY(x, y, this.width, this.height));
+        List<Direction> dirs;
+        if (choices[cell] != -1) {
+            dirs = this.domains[cell].getDirections(choices[cell]);
+        } else if (waves[cell] != null) {
+            dirs = new ArrayList<>(Arrays.asList(waves[cell]));
+        } else {
+            return Collections.emptyList();
+        }
+        dirs.replaceAll(this.symmetry.inverse()::getDirection);
+        return Collections.unmodifiableList(dirs);
     }
 
+    // Solvers of a session solve with the session's transposition table instead of allocating one of their own.
     public boolean solve() {
-        if (!this.isEveryWrongColoredCellReachable()) {
-            return false;
-        } else if (this.game.isSolved()) {
-            return true;
+        if (this.session != null) {
+            return this.session.solve(this, this.sessionGeneration);
         }
-        Position p = this.positions()
-                .filter(p0 -> this.game.getNumber(p0.x, p0.y) != 0 && this.game.getColor(p0.x, p0.y) != Color.NONE)
-                .findAny().get();
-        Stack<Direction> dirs = this.steps.get(p);
-        if (dirs == null) {
-            this.steps.put(p, dirs = new Stack<>());
-        }
-        for (Direction dir : Direction.values()) {
-            if (this.executeWave(p, dir)) {
-                dirs.push(dir);
-                if (this.solve()) {
-                    return true;
-                }
-                dirs.pop();
-                this.reverseWave(p, dir);
+        long start = System.nanoTime();
+        TranspositionTable transpositionTable = this.transpositionTableBytes == 0 ? null
+                : new TranspositionTable(this.transpositionTableBytes, this.replacementPolicy);
+        this.tableNanos = System.nanoTime() - start;
+        try {
+            return this.solve(transpositionTable);
+        } finally {
+            this.tableNanos = 0;
+        }
+    }
+
+    boolean solve(TranspositionTable transpositionTable) {
+        SolveEvent event = this.instrumented ? new SolveEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        long start = System.nanoTime();
+        SolveControl control = this.startControl();
+        Search search = this.enumerable ? new Search(new GameState(this.state), this.domains, this.branchingHeuristic,
+                transpositionTable, control) : null;
+        WaveSearch waveSearch = null;
+        int result[];
+        if (!this.enumerable) {
+            // Strategy, components and parallelism are left out here, the board is solved as a whole.
+            waveSearch = new WaveSearch(new GameState(this.state), this.domains, transpositionTable, control);
+            boolean solved = this.objective == Objective.ANY ? waveSearch.solve()
+                    : waveSearch.solveMinimal(this.objective);
+            result = solved ? waveSearch.getChoices() : null;
+        } else if (this.strategy == Strategy.LINEAR_ALGEBRA) {
+            LinearSearch linear = new LinearSearch(search);
+            if (!linear.reduce()) {
+                result = null;
+            } else if (linear.isEnumerable() && this.objective == Objective.ANY) {
+                result = linear.enumerate();
+            } else {
+                result = this.search(search, control);
             }
+        } else {
+            result = this.search(search, control);
+        }
+        this.control = null;
+        this.nodeCount = control.getNodeCount();
+        if (result == null) {
+            Arrays.fill(this.choices, -1);
+            Arrays.fill(this.waves, null);
+            this.outcome = control.isStopped() ? control.getStopReason() : Outcome.UNSOLVABLE;
+        } else {
+            System.arraycopy(result, 0, this.choices, 0, this.choices.length);
+            this.waves = waveSearch == null ? new Direction[this.choices.length][] : waveSearch.getWaves();
+            this.outcome = Outcome.SOLVED;
         }
-        return false;
+        this.statistics = control.getStatistics(this.setupNanos + this.tableNanos, System.nanoTime() - start);
+        if (event != null) {
+            this.publish(event);
+        }
+        return result != null;
     }
 
-    private Stream<Position> positions() {
-        return IntStream.range(0, this.game.getHeight())
-                .mapToObj(y -> IntStream.range(0, this.game.getWidth()).mapToObj(x -> new Position(x, y)).toList())
-                .collect(LinkedList<Position>::new, LinkedList::addAll, LinkedList::addAll).stream();
+    private boolean solve(Search search) {
+        return this.objective == Objective.ANY ? search.solve() : search.solveMinimal(this.objective);
     }
 
-    private boolean canAReachB(Position a, Position b) {
-        int n = this.game.getNumber(a.x, a.y);
-        return !a.equals(b) && ((a.x == b.x && Math.abs(b.y - a.y) <= n) || (a.y == b.y && Math.abs(b.x - a.x) <= n));
+    // Streams every distinct solution, searching for the next one as the stream is consumed. Timeout and node budget
+    // apply to the whole stream. Symmetry breaking and splitting into components are left out as both skip solutions.
+    public Stream<Solution> solutions() {
+        return StreamSupport.stream(this.spliterator(), false);
     }
 
-    private boolean isEveryWrongColoredCellReachable() {
-        return this.positions().filter(p -> !this.game.isCellCorrect(p.x, p.y))
-                .allMatch(p -> this.game.getNumber(p.x, p.y) != 0
-                        || !this.reachableBy.getOrDefault(p, Collections.emptySet()).isEmpty());
+    public Spliterator<Solution> spliterator() {
+        this.requireEnumerable();
+        return new SolutionSpliterator(this.transpositionTableBytes == 0 ? null
+                : new TranspositionTable(this.transpositionTableBytes, this.replacementPolicy));
     }
 
-    private boolean executeWave(Position p, Direction dir) {
-        int n = this.game.getNumber(p.x, p.y);
-        if (this.game.wave(p.x, p.y, dir)) {
-            this.exactReachables(p, n).map(this.reachableBy::get).forEach(set -> set.remove(p));
-            return true;
+    public SolutionCount countSolutions() {
+        return this.countSolutions(Long.MAX_VALUE);
+    }
+
+    // Counts the distinct solutions up to limit, multiplying the counts of independent components. Each component's
+    // count is memoised by state, so solutions sharing a partial assignment are not walked one by one.
+    public SolutionCount countSolutions(long limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        this.requireEnumerable();
+        long start = System.nanoTime();
+        SolveControl control = this.startControl();
+        Search search = new Search(new GameState(this.state), this.domains, this.branchingHeuristic, null, control);
+        long count = 0;
+        if (this.strategy != Strategy.LINEAR_ALGEBRA || new LinearSearch(search).reduce()) {
+            count = 1;
+            for (long component[] : Components.find(search.getState(), true)) {
+                long componentCount = search.restrict(component, new SolveControl(control)).count(limit);
+                count = componentCount == 0 ? 0 : limit / componentCount < count ? limit : count * componentCount;
+                if (count == 0 || control.isStopped()) {
+                    break;
+                }
+            }
+        }
+        this.control = null;
+        this.statistics = control.getStatistics(this.setupNanos, System.nanoTime() - start);
+        if (control.isStopped()) {
+            return new SolutionCount(0, false);
+        }
+        return new SolutionCount(count, count < limit);
+    }
+
+    private void requireEnumerable() {
+        if (!this.enumerable) {
+            throw new UnsupportedOperationException("Some cells have too many wave patterns to enumerate solutions");
         }
-        return false;
     }
 
-    private void reverseWave(Position p, Direction dir) {
-        int n = this.game.getNumber(p.x, p.y);
-        this.exactReachables(p, n + 1).map(this.reachableBy::get).forEach(set -> set.add(p));
-        this.game.reverseWave(p.x, p.y, dir);
+    private SolveControl startControl() {
+        SolveControl control = new SolveControl(this.timeout.toNanos(), this.nodeBudget, this.progressListener,
+                this.progressInterval.toNanos());
+        this.control = control;
+        if (this.cancelled) {
+            control.stop(Outcome.CANCELLED);
+        }
+        return control;
+    }
+
+    private void publish(SolveEvent event) {
+        SolverMetrics.getInstance().record(this.outcome, this.statistics);
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = this.width;
+            event.height = this.height;
+            event.strategy = this.strategy.name();
+            event.outcome = this.outcome.name();
+            event.nodes = this.statistics.nodes();
+            event.unreachablePrunes = this.statistics.unreachablePrunes();
+            event.transpositionHits = this.statistics.transpositionHits();
+            event.inviableEntries = this.statistics.inviableEntries();
+            event.symmetricEntries = this.statistics.symmetricEntries();
+            event.maxDepth = this.statistics.maxDepth();
+            event.setupDuration = this.statistics.setupNanos();
+            event.commit();
+        }
     }
 
-    private Stream<Position> exactReachables(Position base, int n) {
-        return Arrays
-                .asList(new Position(base.x - n, base.y), new Position(base.x + n, base.y),
-                        new Position(base.x, base.y - n), new Position(base.x, base.y + n))
-                .stream()
-                .filter(b -> 0 <= b.x && b.x < this.game.getWidth() && 0 <= b.y && b.y < this.game.getHeight());
+    private int[] search(Search search, SolveControl control) {
+        List<long[]> components = Components.find(search.getState());
+        if (components.size() <= 1) {
+            if (this.symmetryBreaking) {
+                search.breakSymmetries();
+            }
+            if (this.parallelism == 1 || this.objective != Objective.ANY) {
+                return this.solve(search) ? search.getChoices() : null;
+            }
+            return new ParallelSearch(this.parallelism, this.splitDepth).solve(search);
+        }
+        List<Search> searches = new ArrayList<>(components.size());
+        for (long component[] : components) {
+            Search componentSearch = search.restrict(component, new SolveControl(control));
+            if (this.symmetryBreaking) {
+                componentSearch.breakSymmetries();
+            }
+            searches.add(componentSearch);
+        }
+        int result[] = Arrays.copyOf(search.getChoices(), search.getChoices().length);
+        int componentResults[][];
+        if (this.parallelism == 1 || this.objective != Objective.ANY) {
+            componentResults = new int[searches.size()][];
+            for (int i = 0; i < componentResults.length; ++i) {
+                if (!this.solve(searches.get(i))) {
+                    control.stop(Outcome.UNSOLVABLE);
+                    return null;
+                }
+                componentResults[i] = searches.get(i).getChoices();
+            }
+        } else {
+            componentResults = new ParallelSearch(this.parallelism, this.splitDepth).solve(searches, control);
+            if (componentResults == null) {
+                return null;
+            }
+        }
+        for (int componentResult[] : componentResults) {
+            for (int cell = 0; cell < result.length; ++cell) {
+                if (componentResult[cell] != -1) {
+                    result[cell] = componentResult[cell];
+                }
+            }
+        }
+        return result;
+    }
+
+    private class SolutionSpliterator extends Spliterators.AbstractSpliterator<Solution> {
+        private final TranspositionTable transpositionTable;
+        private Search search;
+        private boolean finished;
+        private long start;
+
+        private SolutionSpliterator(TranspositionTable transpositionTable) {
+            super(Long.MAX_VALUE, Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL
+                    | Spliterator.ORDERED);
+            this.transpositionTable = transpositionTable;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Solution> action) {
+            if (this.finished) {
+                return false;
+            } else if (this.search == null) {
+                this.start = System.nanoTime();
+                this.search = new Search(new GameState(Solver.this.state), Solver.this.domains,
+                        Solver.this.branchingHeuristic, this.transpositionTable, Solver.this.startControl());
+                if (Solver.this.strategy == Strategy.LINEAR_ALGEBRA && !new LinearSearch(this.search).reduce()) {
+                    return this.finish();
+                }
+            }
+            if (!this.search.next()) {
+                return this.finish();
+            }
+            int choices[] = this.search.getChoices().clone();
+            action.accept(new Solution() {
+                @Override
+                public Outcome getOutcome() {
+                    return Outcome.SOLVED;
+                }
+
+                @Override
+                public List<Direction> getCellDirections(int x, int y) {
+                    return Solver.this.getCellDirections(choices, new Direction[choices.length][], x, y);
+                }
+            });
+            return true;
+        }
+
+        private boolean finish() {
+            this.finished = true;
+            SolveControl control = this.search.getControl();
+            Solver.this.statistics = control.getStatistics(Solver.this.setupNanos, System.nanoTime() - this.start);
+            return false;
+        }
     }
 }
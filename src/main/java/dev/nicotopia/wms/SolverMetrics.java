@@ -0,0 +1,138 @@
+package dev.nicotopia.wms;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Totals over all instrumented solves in this JVM, registered as a platform MBean on first use.
+public class SolverMetrics implements SolverMetricsMBean {
+    public static final String OBJECT_NAME = "dev.nicotopia.wms:type=SolverMetrics";
+
+    private static SolverMetrics instance;
+
+    public static synchronized SolverMetrics getInstance() {
+        if (instance == null) {
+            SolverMetrics metrics = new SolverMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+            } catch (JMException ex) {
+                throw new IllegalStateException("Registering " + OBJECT_NAME + " failed", ex);
+            }
+            instance = metrics;
+        }
+        return instance;
+    }
+
+    private final LongAdder solveCount = new LongAdder();
+    private final LongAdder solvedCount = new LongAdder();
+    private final LongAdder unsolvableCount = new LongAdder();
+    private final LongAdder stoppedCount = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder unreachablePrunes = new LongAdder();
+    private final LongAdder transpositionHits = new LongAdder();
+    private final LongAdder inviableEntries = new LongAdder();
+    private final LongAdder symmetricEntries = new LongAdder();
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder setupNanos = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+
+    private SolverMetrics() {
+    }
+
+    void record(Solver.Outcome outcome, SolverStatistics statistics) {
+        this.solveCount.increment();
+        switch (outcome) {
+            case SOLVED -> this.solvedCount.increment();
+            case UNSOLVABLE -> this.unsolvableCount.increment();
+            case CANCELLED, TIMED_OUT, NODE_BUDGET_EXHAUSTED -> this.stoppedCount.increment();
+        }
+        this.nodes.add(statistics.nodes());
+        this.unreachablePrunes.add(statistics.unreachablePrunes());
+        this.transpositionHits.add(statistics.transpositionHits());
+        this.inviableEntries.add(statistics.inviableEntries());
+        this.symmetricEntries.add(statistics.symmetricEntries());
+        this.maxDepth.accumulate(statistics.maxDepth());
+        this.setupNanos.add(statistics.setupNanos());
+        this.searchNanos.add(statistics.searchNanos());
+    }
+
+    @Override
+    public long getSolveCount() {
+        return this.solveCount.sum();
+    }
+
+    @Override
+    public long getSolvedCount() {
+        return this.solvedCount.sum();
+    }
+
+    @Override
+    public long getUnsolvableCount() {
+        return this.unsolvableCount.sum();
+    }
+
+    @Override
+    public long getStoppedCount() {
+        return this.stoppedCount.sum();
+    }
+
+    @Override
+    public long getNodes() {
+        return this.nodes.sum();
+    }
+
+    @Override
+    public long getUnreachablePrunes() {
+        return this.unreachablePrunes.sum();
+    }
+
+    @Override
+    public long getTranspositionHits() {
+        return this.transpositionHits.sum();
+    }
+
+    @Override
+    public long getInviableEntries() {
+        return this.inviableEntries.sum();
+    }
+
+    @Override
+    public long getSymmetricEntries() {
+        return this.symmetricEntries.sum();
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return (int) this.maxDepth.get();
+    }
+
+    @Override
+    public long getSetupMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.setupNanos.sum());
+    }
+
+    @Override
+    public long getSearchMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.searchNanos.sum());
+    }
+
+    @Override
+    public double getNodesPerSecond() {
+        long searchNanos = this.searchNanos.sum();
+        return searchNanos == 0 ? 0 : this.nodes.sum() * 1e9 / searchNanos;
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : new LongAdder[] { this.solveCount, this.solvedCount, this.unsolvableCount,
+                this.stoppedCount, this.nodes, this.unreachablePrunes, this.transpositionHits, this.inviableEntries,
+                this.symmetricEntries, this.setupNanos, this.searchNanos }) {
+            adder.reset();
+        }
+        this.maxDepth.reset();
+    }
+}
@@ -0,0 +1,31 @@
+package dev.nicotopia.wms;
+
+public interface SolverMetricsMBean {
+    public long getSolveCount();
+
+    public long getSolvedCount();
+
+    public long getUnsolvableCount();
+
+    public long getStoppedCount();
+
+    public long getNodes();
+
+    public long getUnreachablePrunes();
+
+    public long getTranspositionHits();
+
+    public long getInviableEntries();
+
+    public long getSymmetricEntries();
+
+    public int getMaxDepth();
+
+    public long getSetupMillis();
+
+    public long getSearchMillis();
+
+    public double getNodesPerSecond();
+
+    public void reset();
+}
@@ -0,0 +1,100 @@
+package dev.nicotopia.wms;
+
+import dev.nicotopia.wms.Game.Color;
+
+// Keeps what solving a game builds across edits of that game: the board orientation, the cell domains and the
+// transposition table with the states learned to be unsolvable. The table is keyed by wrong cells and numbers only, so
+// its entries stay valid while no cell turns into or out of a NONE cell. Such an edit drops the table and the domains
+// of the cells whose waves pass the edited cell; other edits only rebuild the domains of cells whose number changed.
+public class SolverSession implements Game.CellListener, AutoCloseable {
+    private final Game game;
+    private final Symmetry symmetry;
+    private final CellDomain domains[];
+    private final boolean none[];
+    private final TranspositionTable transpositionTable;
+    private int generation;
+    private int tableGeneration;
+    // The objective whose bounds the table may hold besides unsolvable states, null if it holds none.
+    private Solver.Objective tableObjective;
+
+    public SolverSession(Game game) {
+        this(game, 1L << 22, TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED);
+    }
+
+    public SolverSession(Game game, long transpositionTableBytes, TranspositionTable.ReplacementPolicy policy) {
+        if (transpositionTableBytes < 0) {
+            throw new IllegalArgumentException("Transposition table size must not be negative");
+        }
+        this.game = game;
+        this.symmetry = Symmetry.canonical(game);
+        this.domains = new CellDomain[game.getWidth() * game.getHeight()];
+        this.none = new boolean[game.getWidth() * game.getHeight()];
+        for (int y = 0; y < game.getHeight(); ++y) {
+            for (int x = 0; x < game.getWidth(); ++x) {
+                this.none[y * game.getWidth() + x] = game.getColor(x, y) == Color.NONE;
+            }
+        }
+        this.transpositionTable = transpositionTableBytes == 0 ? null
+                : new TranspositionTable(transpositionTableBytes, policy);
+        game.addCellListener(this);
+    }
+
+    public Game getGame() {
+        return this.game;
+    }
+
+    // A solver for the current state of the game. Its settings apply as usual, except that it solves with the
+    // session's transposition table. Solves of one session run one after the other.
+    public synchronized Solver newSolver() {
+        Solver solver = new Solver(this.game, this.symmetry, this.domains);
+        solver.bind(this, this.generation);
+        return solver;
+    }
+
+    boolean solve(Solver solver, int generation) {
+        if (this.transpositionTable == null) {
+            return solver.solve(null);
+        }
+        synchronized (this.transpositionTable) {
+            Solver.Objective objective = solver.getObjective() == Solver.Objective.ANY ? null : solver.getObjective();
+            if (this.tableGeneration != generation
+                    || (objective != null && this.tableObjective != null && objective != this.tableObjective)) {
+                this.transpositionTable.clear();
+                this.tableGeneration = generation;
+                this.tableObjective = null;
+            }
+            if (objective != null) {
+                this.tableObjective = objective;
+            }
+            return solver.solve(this.transpositionTable);
+        }
+    }
+
+    @Override
+    public synchronized void onCellChange(int x, int y) {
+        boolean none = this.game.getColor(x, y) == Color.NONE;
+        if (none == this.none[y * this.game.getWidth() + x]) {
+            return;
+        }
+        this.none[y * this.game.getWidth() + x] = none;
+        ++this.generation;
+        int width = this.symmetry.getWidth(this.game.getWidth(), this.game.getHeight());
+        int cx = this.symmetry.getX(x, y, this.game.getWidth(), this.game.getHeight());
+        int cy = this.symmetry.getY(x, y, this.game.getWidth(), this.game.getHeight());
+        for (int cell = 0; cell < this.domains.length; ++cell) {
+            CellDomain domain = this.domains[cell];
+            if (domain != null) {
+                int dx = Math.abs(cell % width - cx);
+                int dy = Math.abs(cell / width - cy);
+                if ((dx == 0 && dy <= domain.getNumber()) || (dy == 0 && dx <= domain.getNumber())) {
+                    this.domains[cell] = null;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.game.removeCellListener(this);
+    }
+}
@@ -0,0 +1,10 @@
+package dev.nicotopia.wms;
+
+public record SolverStatistics(long nodes, long unreachablePrunes, long transpositionHits, long inviableEntries,
+        long symmetricEntries, int maxDepth, long setupNanos, long searchNanos) {
+    public static final SolverStatistics EMPTY = new SolverStatistics(0, 0, 0, 0, 0, 0, 0, 0);
+
+    public double getNodesPerSecond() {
+        return this.searchNanos == 0 ? 0 : this.nodes * 1e9 / this.searchNanos;
+    }
+}
@@ -0,0 +1,431 @@
+package dev.nicotopia.wms;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import dev.nicotopia.wms.Game.Direction;
+import dev.nicotopia.wms.Game.SplitType;
+
+// Solves a game whose split positions, and optionally split type, are unknown. Every configuration's target differs
+// from the game's own by a mask of cells, so one depth-first search over the cell domains serves all of them: a node
+// keeps the configurations whose wrong cells are all still reachable, which only shrink further down, and is pruned
+// once none are left. Configurations with the same target share their mask and their solution. Boards with cells
+// whose wave patterns are too many to enumerate are solved one target after the other instead.
+public class SplitSolver {
+    public record Configuration(SplitType splitType, int left, int up, int right, int down) {
+        public int getSplit(Direction dir) {
+            return switch (dir) {
+                case LEFT -> this.left;
+                case UP -> this.up;
+                case RIGHT -> this.right;
+                case DOWN -> this.down;
+            };
+        }
+
+        public void applyTo(Game game) {
+            game.update(() -> {
+                game.setSplitType(this.splitType);
+                for (Direction dir : Direction.values()) {
+                    game.setSplit(dir, this.getSplit(dir));
+                }
+            });
+        }
+    }
+
+    public record Result(Configuration configuration, Solution solution) {
+    }
+
+    private record Mask(long[] bits) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Mask m && Arrays.equals(this.bits, m.bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.bits);
+        }
+    }
+
+    private final Game game;
+    private Set<SplitType> splitTypes;
+    private long transpositionTableBytes = 1L << 22;
+    private Duration timeout = Duration.ZERO;
+    private long nodeBudget = 0;
+    private volatile boolean cancelled;
+    private volatile SolveControl control;
+    private volatile Solver solver;
+    private Solver.Outcome outcome;
+    private long nodeCount;
+
+    public SplitSolver(Game game) {
+        this.game = game;
+        this.splitTypes = EnumSet.of(game.getSplitType());
+    }
+
+    public Set<SplitType> getSplitTypes() {
+        return Collections.unmodifiableSet(this.splitTypes);
+    }
+
+    public void setSplitTypes(Set<SplitType> splitTypes) {
+        if (splitTypes.isEmpty()) {
+            throw new IllegalArgumentException("At least one split type is needed");
+        }
+        this.splitTypes = EnumSet.copyOf(splitTypes);
+    }
+
+    public long getTranspositionTableBytes() {
+        return this.transpositionTableBytes;
+    }
+
+    public void setTranspositionTableBytes(long transpositionTableBytes) {
+        if (transpositionTableBytes < 0) {
+            throw new IllegalArgumentException("Transposition table size must not be negative");
+        }
+        this.transpositionTableBytes = transpositionTableBytes;
+    }
+
+    public Duration getTimeout() {
+        return this.timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Timeout must not be negative");
+        }
+        this.timeout = timeout;
+    }
+
+    public long getNodeBudget() {
+        return this.nodeBudget;
+    }
+
+    public void setNodeBudget(long nodeBudget) {
+        if (nodeBudget < 0) {
+            throw new IllegalArgumentException("Node budget must not be negative");
+        }
+        this.nodeBudget = nodeBudget;
+    }
+
+    public void cancel() {
+        this.cancelled = true;
+        SolveControl control = this.control;
+        if (control != null) {
+            control.stop(Solver.Outcome.CANCELLED);
+        }
+        Solver solver = this.solver;
+        if (solver != null) {
+            solver.cancel();
+        }
+    }
+
+    // SOLVED or UNSOLVABLE once every configuration was decided, otherwise the reason the search stopped early.
+    public Solver.Outcome getOutcome() {
+        return this.outcome;
+    }
+
+    public long getNodeCount() {
+        return this.nodeCount;
+    }
+
+    // Every configuration of the chosen split types that has a solution, each with one of them, in the order of the
+    // split types and then of their positions. A stopped search returns those found so far.
+    public List<Result> solve() {
+        long start = System.nanoTime();
+        SolveControl control = new SolveControl(this.timeout.toNanos(), this.nodeBudget, null, 0);
+        this.control = control;
+        if (this.cancelled) {
+            control.stop(Solver.Outcome.CANCELLED);
+        }
+        GameState state = new GameState(this.game);
+        CellDomain domains[] = new CellDomain[state.getCellCount()];
+        boolean enumerable = true;
+        for (int cell = 0; cell < domains.length; ++cell) {
+            if (state.canWave(cell)) {
+                domains[cell] = CellDomain.tryCreate(state, cell);
+                enumerable &= domains[cell] != null;
+            }
+        }
+        List<Configuration> configurations = new ArrayList<>();
+        List<Integer> targets = new ArrayList<>();
+        long masks[] = this.findTargetMasks(state, configurations, targets);
+        int targetCount = masks.length / state.getWaveTable().getWordCount();
+        Solution solutions[] = new Solution[targetCount];
+        if (enumerable) {
+            MultiTargetSearch search = new MultiTargetSearch(state, domains,
+                    this.transpositionTableBytes == 0 ? null
+                            : new TranspositionTable(this.transpositionTableBytes,
+                                    TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED),
+                    control, masks, targetCount);
+            search.run();
+            for (int target = 0; target < targetCount; ++target) {
+                int choices[] = search.solutions[target];
+                if (choices != null) {
+                    solutions[target] = new Solution() {
+                        @Override
+                        public Solver.Outcome getOutcome() {
+                            return Solver.Outcome.SOLVED;
+                        }
+
+                        @Override
+                        public List<Direction> getCellDirections(int x, int y) {
+                            int cell = state.getCell(x, y);
+                            return choices[cell] == -1 ? Collections.emptyList()
+                                    : Collections.unmodifiableList(domains[cell].getDirections(choices[cell]));
+                        }
+                    };
+                }
+            }
+        } else {
+            this.solveEach(configurations, targets, solutions, control, start);
+        }
+        this.control = null;
+        this.nodeCount = control.getNodeCount();
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < configurations.size(); ++i) {
+            Solution solution = solutions[targets.get(i)];
+            if (solution != null) {
+                results.add(new Result(configurations.get(i), solution));
+            }
+        }
+        if (control.isStopped()) {
+            this.outcome = control.getStopReason();
+        } else {
+            this.outcome = results.isEmpty() ? Solver.Outcome.UNSOLVABLE : Solver.Outcome.SOLVED;
+        }
+        return results;
+    }
+
+    // Solves the first configuration of every target with a solver of its own, which shares the remaining timeout and
+    // node budget.
+    private void solveEach(List<Configuration> configurations, List<Integer> targets, Solution solutions[],
+            SolveControl control, long start) {
+        boolean decided[] = new boolean[solutions.length];
+        for (int i = 0; i < configurations.size() && !control.isStopped(); ++i) {
+            int target = targets.get(i);
+            if (decided[target]) {
+                continue;
+            }
+            decided[target] = true;
+            long timeout = this.timeout.toNanos() - (System.nanoTime() - start);
+            long nodeBudget = this.nodeBudget - control.getNodeCount();
+            if (!this.timeout.isZero() && timeout <= 0) {
+                control.stop(Solver.Outcome.TIMED_OUT);
+                break;
+            } else if (this.nodeBudget != 0 && nodeBudget <= 0) {
+                control.stop(Solver.Outcome.NODE_BUDGET_EXHAUSTED);
+                break;
+            }
+            Game game = new Game(this.game);
+            configurations.get(i).applyTo(game);
+            Solver solver = new Solver(game);
+            solver.setTranspositionTableBytes(this.transpositionTableBytes);
+            solver.setTimeout(this.timeout.isZero() ? Duration.ZERO : Duration.ofNanos(timeout));
+            solver.setNodeBudget(this.nodeBudget == 0 ? 0 : nodeBudget);
+            this.solver = solver;
+            if (control.isStopped()) {
+                solver.cancel();
+            }
+            boolean solved = solver.solve();
+            control.addNodes(solver.getNodeCount());
+            if (solved) {
+                solutions[target] = solver;
+            } else if (solver.getOutcome() != Solver.Outcome.UNSOLVABLE) {
+                control.stop(solver.getOutcome());
+            }
+        }
+        this.solver = null;
+    }
+
+    // Lists every configuration along with the index of its target, and returns the targets one after the other as
+    // masks of the cells whose target color differs from the game's own.
+    private long[] findTargetMasks(GameState state, List<Configuration> configurations, List<Integer> targets) {
+        int words = state.getWaveTable().getWordCount();
+        Map<Mask, Integer> indices = new HashMap<>();
+        List<long[]> masks = new ArrayList<>();
+        Game scratch = new Game(this.game);
+        for (SplitType splitType : this.splitTypes) {
+            scratch.setSplitType(splitType);
+            Direction dirs[] = getFreeDirections(splitType);
+            int ranges[] = new int[dirs.length];
+            long count = 1;
+            for (int i = 0; i < dirs.length; ++i) {
+                ranges[i] = (dirs[i] == Direction.LEFT || dirs[i] == Direction.RIGHT ? scratch.getHeight()
+                        : scratch.getWidth()) - 1;
+                count *= ranges[i];
+            }
+            for (long index = 0; index < count; ++index) {
+                long rest = index;
+                for (int i = 0; i < dirs.length; ++i) {
+                    scratch.setSplit(dirs[i], 1 + (int) (rest % ranges[i]));
+                    rest /= ranges[i];
+                }
+                long mask[] = new long[words];
+                for (int y = 0; y < scratch.getHeight(); ++y) {
+                    for (int x = 0; x < scratch.getWidth(); ++x) {
+                        int cell = state.getCell(x, y);
+                        if (!state.isNone(cell) && scratch.getTargetColor(x, y) != this.game.getTargetColor(x, y)) {
+                            mask[cell >>> 6] |= 1L << cell;
+                        }
+                    }
+                }
+                Integer target = indices.get(new Mask(mask));
+                if (target == null) {
+                    indices.put(new Mask(mask), target = masks.size());
+                    masks.add(mask);
+                }
+                configurations.add(new Configuration(splitType, scratch.getSplit(Direction.LEFT),
+                        scratch.getSplit(Direction.UP), scratch.getSplit(Direction.RIGHT),
+                        scratch.getSplit(Direction.DOWN)));
+                targets.add(target);
+            }
+        }
+        long all[] = new long[masks.size() * words];
+        for (int i = 0; i < masks.size(); ++i) {
+            System.arraycopy(masks.get(i), 0, all, i * words, words);
+        }
+        return all;
+    }
+
+    // The sides whose positions the target colors depend on, setting coupled sides along.
+    private static Direction[] getFreeDirections(SplitType splitType) {
+        return switch (splitType) {
+            case NONE -> new Direction[0];
+            case HOR -> new Direction[] { Direction.LEFT };
+            case VERT -> new Direction[] { Direction.UP };
+            case HOR_AND_VERT -> new Direction[] { Direction.LEFT, Direction.UP, Direction.DOWN };
+            case VERT_AND_HOR -> new Direction[] { Direction.UP, Direction.LEFT, Direction.RIGHT };
+            case TOP_LEFT -> new Direction[] { Direction.UP, Direction.LEFT };
+            case TOP_RIGHT -> new Direction[] { Direction.UP, Direction.RIGHT };
+            case BOTTOM_LEFT -> new Direction[] { Direction.DOWN, Direction.LEFT };
+            case BOTTOM_RIGHT -> new Direction[] { Direction.DOWN, Direction.RIGHT };
+        };
+    }
+
+    // Iterative depth-first search like Search.search, keeping the live targets of every open level in one stack of
+    // index lists. A node that was searched through is added to the transposition table: the targets alive at a later
+    // visit were alive at the first one too and found no solution below it.
+    private static class MultiTargetSearch {
+        private final GameState state;
+        private final CellDomain domains[];
+        private final TranspositionTable transpositionTable;
+        private final SolveControl control;
+        private final long masks[];
+        private final int words;
+        private final int choices[];
+        private final int stackCells[];
+        private final int stackEntries[];
+        private final byte stackNumbers[];
+        private final int aliveStarts[];
+        private int alive[];
+        private final int solutions[][];
+        private int open;
+        private long nodes;
+
+        private MultiTargetSearch(GameState state, CellDomain domains[], TranspositionTable transpositionTable,
+                SolveControl control, long masks[], int targets) {
+            this.state = state;
+            this.domains = domains;
+            this.transpositionTable = transpositionTable;
+            this.control = control;
+            this.masks = masks;
+            this.words = state.getWaveTable().getWordCount();
+            this.choices = new int[domains.length];
+            this.stackCells = new int[domains.length];
+            this.stackEntries = new int[domains.length];
+            this.stackNumbers = new byte[domains.length];
+            this.aliveStarts = new int[domains.length + 2];
+            this.alive = new int[Math.max(16, 2 * targets)];
+            this.solutions = new int[targets][];
+            this.open = targets;
+            Arrays.fill(this.choices, -1);
+        }
+
+        private void run() {
+            int depth = 0;
+            boolean enter = true;
+            while (this.open != 0) {
+                if (enter) {
+                    if ((++this.nodes & SolveControl.POLL_INTERVAL - 1) == 0
+                            && this.control.poll(SolveControl.POLL_INTERVAL, depth)) {
+                        break;
+                    } else if (this.filter(depth) && this.open != 0 && (this.transpositionTable == null
+                            || !this.transpositionTable.contains(this.state.getHash()))) {
+                        int cell = BranchingHeuristics.FEWEST_MOVES.selectCell(this.state, this.domains);
+                        if (cell != -1) {
+                            this.stackCells[depth] = cell;
+                            this.stackEntries[depth] = -1;
+                            this.stackNumbers[depth] = (byte) this.state.getNumber(cell);
+                            this.state.setNumber(cell, 0);
+                            ++depth;
+                        }
+                    }
+                }
+                if (depth == 0) {
+                    break;
+                }
+                int cell = this.stackCells[depth - 1];
+                if (this.advance(depth - 1)) {
+                    enter = true;
+                } else {
+                    this.choices[cell] = -1;
+                    this.state.setNumber(cell, this.stackNumbers[--depth]);
+                    if (this.transpositionTable != null) {
+                        this.transpositionTable.add(this.state.getHash(), this.state.getWaveableCount());
+                    }
+                    enter = false;
+                }
+            }
+            this.control.addNodes(this.nodes & SolveControl.POLL_INTERVAL - 1);
+        }
+
+        // Keeps the parent's targets that are still open and whose wrong cells are all reachable, recording a
+        // solution for those the node solves. Returns false if no open target is left.
+        private boolean filter(int depth) {
+            int from = depth == 0 ? 0 : this.aliveStarts[depth - 1];
+            int to = depth == 0 ? this.solutions.length : this.aliveStarts[depth];
+            int size = this.aliveStarts[depth];
+            if (this.alive.length < size + to - from) {
+                this.alive = Arrays.copyOf(this.alive, Math.max(2 * this.alive.length, size + to - from));
+            }
+            for (int i = from; i < to; ++i) {
+                int target = depth == 0 ? i : this.alive[i];
+                if (this.solutions[target] == null
+                        && this.state.isEveryWrongCellReachable(this.masks, target * this.words)) {
+                    if (this.state.isSolved(this.masks, target * this.words)) {
+                        this.solutions[target] = this.choices.clone();
+                        --this.open;
+                    } else {
+                        this.alive[size++] = target;
+                    }
+                }
+            }
+            this.aliveStarts[depth + 1] = size;
+            return this.aliveStarts[depth] != size;
+        }
+
+        private boolean advance(int depth) {
+            int cell = this.stackCells[depth];
+            CellDomain domain = this.domains[cell];
+            int entry = this.stackEntries[depth];
+            if (entry != -1) {
+                this.state.toggle(domain.getMasks(), domain.getMaskOffset(entry), domain.getHash(entry));
+            }
+            if (++entry == domain.size()) {
+                this.stackEntries[depth] = -1;
+                return false;
+            }
+            this.state.toggle(domain.getMasks(), domain.getMaskOffset(entry), domain.getHash(entry));
+            this.choices[cell] = entry;
+            this.stackEntries[depth] = entry;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package dev.nicotopia.wms;
+
+import dev.nicotopia.wms.Game.Color;
+import dev.nicotopia.wms.Game.Direction;
+
+public enum Symmetry {
+    IDENTITY(false, 0, 1, 2, 3), MIRROR_HORIZONTAL(false, 2, 1, 0, 3), MIRROR_VERTICAL(false, 0, 3, 2, 1),
+    ROTATE_180(false, 2, 3, 0, 1), TRANSPOSE(true, 1, 0, 3, 2), ANTI_TRANSPOSE(true, 3, 2, 1, 0),
+    ROTATE_CLOCKWISE(true, 1, 2, 3, 0), ROTATE_COUNTERCLOCKWISE(true, 3, 0, 1, 2);
+
+    private static final Direction DIRECTIONS[] = Direction.values();
+
+    private final boolean transposing;
+    private final int directions[];
+
+    private Symmetry(boolean transposing, int... directions) {
+        this.transposing = transposing;
+        this.directions = directions;
+    }
+
+    public boolean isTransposing() {
+        return this.transposing;
+    }
+
+    public Symmetry inverse() {
+        return switch (this) {
+            case ROTATE_CLOCKWISE -> ROTATE_COUNTERCLOCKWISE;
+            case ROTATE_COUNTERCLOCKWISE -> ROTATE_CLOCKWISE;
+            default -> this;
+        };
+    }
+
+    public int getWidth(int width, int height) {
+        return this.transposing ? height : width;
+    }
+
+    public int getHeight(int width, int height) {
+        return this.transposing ? width : height;
+    }
+
+    public int getX(int x, int y, int width, int height) {
+        return switch (this) {
+            case IDENTITY, MIRROR_VERTICAL -> x;
+            case MIRROR_HORIZONTAL, ROTATE_180 -> width - 1 - x;
+            case TRANSPOSE, ROTATE_COUNTERCLOCKWISE -> y;
+            case ANTI_TRANSPOSE, ROTATE_CLOCKWISE -> height - 1 - y;
+        };
+    }
+
+    public int getY(int x, int y, int width, int height) {
+        return switch (this) {
+            case IDENTITY, MIRROR_HORIZONTAL -> y;
+            case MIRROR_VERTICAL, ROTATE_180 -> height - 1 - y;
+            case TRANSPOSE, ROTATE_CLOCKWISE -> x;
+            case ANTI_TRANSPOSE, ROTATE_COUNTERCLOCKWISE -> width - 1 - x;
+        };
+    }
+
+    public int getCell(int cell, int width, int height) {
+        int x = cell % width;
+        int y = cell / width;
+        return this.getY(x, y, width, height) * this.getWidth(width, height) + this.getX(x, y, width, height);
+    }
+
+    public Direction getDirection(Direction dir) {
+        return DIRECTIONS[this.directions[dir.ordinal()]];
+    }
+
+    // The orientation whose cells, read row by row as (color, number, target color), compare smallest. Mirror images and
+    // transposes of a game thus share their canonical form.
+    public static Symmetry canonical(Game game) {
+        Symmetry best = IDENTITY;
+        for (Symmetry symmetry : values()) {
+            if (symmetry.compare(best, game) < 0) {
+                best = symmetry;
+            }
+        }
+        return best;
+    }
+
+    private int compare(Symmetry other, Game game) {
+        int width = game.getWidth();
+        int height = game.getHeight();
+        int c = Integer.compare(this.getWidth(width, height), other.getWidth(width, height));
+        if (c != 0) {
+            return c;
+        }
+        Symmetry inverse = this.inverse();
+        Symmetry otherInverse = other.inverse();
+        int canonicalWidth = this.getWidth(width, height);
+        int canonicalHeight = this.getHeight(width, height);
+        for (int y = 0; y < canonicalHeight; ++y) {
+            for (int x = 0; x < canonicalWidth; ++x) {
+                int x1 = inverse.getX(x, y, canonicalWidth, canonicalHeight);
+                int y1 = inverse.getY(x, y, canonicalWidth, canonicalHeight);
+                int x2 = otherInverse.getX(x, y, canonicalWidth, canonicalHeight);
+                int y2 = otherInverse.getY(x, y, canonicalWidth, canonicalHeight);
+                c = Integer.compare(cellKey(game, x1, y1), cellKey(game, x2, y2));
+                if (c != 0) {
+                    return c;
+                }
+            }
+        }
+        return 0;
+    }
+
+    static int cellKey(Game game, int x, int y) {
+        Color color = game.getColor(x, y);
+        if (color == Color.NONE) {
+            return 0;
+        }
+        return (game.getNumber(x, y) * 3 + color.ordinal()) * 3 + game.getTargetColor(x, y).ordinal();
+    }
+}
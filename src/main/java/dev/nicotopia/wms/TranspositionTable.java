@@ -0,0 +1,115 @@
+package dev.nicotopia.wms;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+// Workers of a ParallelSearch share one table without locking. Every slot holds 48 bits of its hash and the bound in
+// one long, read and written with opaque access, so an entry is never seen torn: a reader either finds the key together
+// with its bound or a different key. The slot index comes from the lower hash bits. Depths live apart and are only used
+// to pick a slot to replace, where a stale value costs nothing but a worse choice.
+public class TranspositionTable {
+    public enum ReplacementPolicy {
+        ALWAYS, DEPTH_PREFERRED, KEEP_EXISTING
+    }
+
+    // Bound of states known to have no solution at all.
+    public static final int UNSOLVABLE = Short.MAX_VALUE;
+
+    private static final int PROBES = 4;
+    private static final long BOUND_MASK = 0xFFFF;
+    private static final VarHandle ENTRIES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long entries[];
+    private final byte depths[];
+    private final int mask;
+    private final ReplacementPolicy policy;
+    private boolean empty = true;
+
+    public TranspositionTable(long maxBytes, ReplacementPolicy policy) {
+        long capacity = Long.highestOneBit(Math.max(PROBES, maxBytes / (Long.BYTES + Byte.BYTES)));
+        if (Integer.MAX_VALUE < capacity) {
+            capacity = Integer.highestOneBit(Integer.MAX_VALUE);
+        }
+        this.entries = new long[(int) capacity];
+        this.depths = new byte[(int) capacity];
+        this.mask = (int) capacity - 1;
+        this.policy = policy;
+    }
+
+    public int getCapacity() {
+        return this.entries.length;
+    }
+
+    public ReplacementPolicy getReplacementPolicy() {
+        return this.policy;
+    }
+
+    public boolean contains(long hash) {
+        return this.getBound(hash) == UNSOLVABLE;
+    }
+
+    // A lower bound on the cost of solving the state with the given hash, 0 if nothing is known about it.
+    public int getBound(long hash) {
+        long key = key(hash);
+        for (int i = 0; i < PROBES; ++i) {
+            long entry = (long) ENTRIES.getOpaque(this.entries, (int) hash + i & this.mask);
+            if ((entry & ~BOUND_MASK) == key) {
+                return (int) (entry & BOUND_MASK);
+            } else if (entry == 0) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    public void add(long hash, int depth) {
+        this.add(hash, depth, UNSOLVABLE);
+    }
+
+    public void add(long hash, int depth, int bound) {
+        long key = key(hash);
+        int victim = -1;
+        for (int i = 0; i < PROBES; ++i) {
+            int slot = (int) hash + i & this.mask;
+            long entry = (long) ENTRIES.getOpaque(this.entries, slot);
+            if ((entry & ~BOUND_MASK) == key || entry == 0) {
+                this.put(slot, key, depth, bound);
+                return;
+            } else if (victim == -1 || this.depths[slot] < this.depths[victim]) {
+                victim = slot;
+            }
+        }
+        switch (this.policy) {
+            case ALWAYS -> this.put((int) hash + PROBES - 1 & this.mask, key, depth, bound);
+            case DEPTH_PREFERRED -> {
+                if (this.depths[victim] <= depth) {
+                    this.put(victim, key, depth, bound);
+                }
+            }
+            case KEEP_EXISTING -> {
+            }
+        }
+    }
+
+    public void clear() {
+        if (!this.empty) {
+            Arrays.fill(this.entries, 0);
+            Arrays.fill(this.depths, (byte) 0);
+            this.empty = true;
+        }
+    }
+
+    // The upper hash bits with the lower ones folded in, as neighbouring slots hold hashes with other lower bits. Never
+    // 0 as that marks an empty slot.
+    private static long key(long hash) {
+        long key = (hash ^ hash << Long.SIZE - Short.SIZE) & ~BOUND_MASK;
+        return key == 0 ? BOUND_MASK + 1 : key;
+    }
+
+    private void put(int slot, long key, int depth, int bound) {
+        this.depths[slot] = (byte) Math.min(depth, Byte.MAX_VALUE);
+        ENTRIES.setOpaque(this.entries, slot, key | Math.min(bound, UNSOLVABLE) & BOUND_MASK);
+        this.empty = false;
+    }
+}
@@ -0,0 +1,235 @@
+package dev.nicotopia.wms;
+
+import java.util.Arrays;
+
+import dev.nicotopia.wms.Game.Direction;
+
+// Search for boards with cells whose wave patterns are too many to enumerate. Cells with a domain are branched on as
+// in Search; the others send one wave at a time, or stop, so their patterns are only ever built along the path taken.
+// The cell to branch on depends on the state alone, which keeps the transposition table sound: cells with a domain go
+// first, and a cell sending single waves keeps branching until it stops or runs out of numbers.
+class WaveSearch {
+    private static final Direction DIRECTIONS[] = Direction.values();
+    private static final int STOP = DIRECTIONS.length;
+    private static final int INFINITE_COST = Integer.MAX_VALUE;
+
+    private final GameState state;
+    private final CellDomain domains[];
+    private final TranspositionTable transpositionTable;
+    private final SolveControl control;
+    private final byte numbers[];
+    private final int choices[];
+    private final int stackCells[];
+    private final int stackOptions[];
+    private final byte stackNumbers[];
+    private final int stackCosts[];
+    private Solver.Objective objective = Solver.Objective.ANY;
+    private int depth;
+    private int nextBound;
+    private long nodes;
+    private long unreachablePrunes;
+    private long transpositionHits;
+    private long inviableEntries;
+    private int maxDepth;
+
+    WaveSearch(GameState state, CellDomain domains[], TranspositionTable transpositionTable, SolveControl control) {
+        this.state = state;
+        this.domains = domains;
+        this.transpositionTable = transpositionTable;
+        this.control = control;
+        this.numbers = new byte[domains.length];
+        this.choices = new int[domains.length];
+        int levels = 1;
+        for (int cell = 0; cell < domains.length; ++cell) {
+            this.numbers[cell] = (byte) state.getNumber(cell);
+            levels += 1 + (domains[cell] == null ? state.getNumber(cell) : 0);
+        }
+        this.stackCells = new int[levels];
+        this.stackOptions = new int[levels];
+        this.stackNumbers = new byte[levels];
+        this.stackCosts = new int[levels];
+        Arrays.fill(this.choices, -1);
+    }
+
+    int[] getChoices() {
+        return this.choices;
+    }
+
+    // The single waves sent by each cell without a domain on the path to the solution found, in order.
+    Direction[][] getWaves() {
+        Direction waves[][] = new Direction[this.domains.length][];
+        int counts[] = new int[this.domains.length];
+        for (int level = 0; level < this.depth; ++level) {
+            if (this.domains[this.stackCells[level]] == null && this.stackOptions[level] < STOP) {
+                ++counts[this.stackCells[level]];
+            }
+        }
+        for (int level = 0; level < this.depth; ++level) {
+            int cell = this.stackCells[level];
+            if (this.domains[cell] == null && this.stackOptions[level] < STOP) {
+                if (waves[cell] == null) {
+                    waves[cell] = new Direction[counts[cell]];
+                    counts[cell] = 0;
+                }
+                waves[cell][counts[cell]++] = DIRECTIONS[this.stackOptions[level]];
+            }
+        }
+        return waves;
+    }
+
+    boolean solve() {
+        boolean solved = this.search(INFINITE_COST);
+        this.flushStatistics();
+        return solved;
+    }
+
+    // Iterative deepening on the cost of the objective. Without a lower bound to prune with, each round searches every
+    // state within the bound again, so this is only suited to the boards Search cannot take.
+    boolean solveMinimal(Solver.Objective objective) {
+        this.objective = objective;
+        boolean solved = false;
+        for (int bound = 0; !solved && bound != INFINITE_COST && !this.control.isStopped(); bound = this.nextBound) {
+            this.nextBound = INFINITE_COST;
+            solved = this.search(bound);
+        }
+        this.flushStatistics();
+        return solved;
+    }
+
+    private void flushStatistics() {
+        this.control.addNodes(this.nodes & SolveControl.POLL_INTERVAL - 1);
+        this.nodes = 0;
+        this.control.addStatistics(this.unreachablePrunes, this.transpositionHits, this.inviableEntries, 0,
+                this.maxDepth);
+        this.unreachablePrunes = this.transpositionHits = this.inviableEntries = 0;
+        this.maxDepth = 0;
+    }
+
+    private boolean search(int bound) {
+        // Bounds depend on the path's cost, so only the unbounded search may learn unsolvable states.
+        TranspositionTable transpositionTable = bound == INFINITE_COST ? this.transpositionTable : null;
+        this.depth = 0;
+        int cost = 0;
+        boolean enter = true;
+        for (;;) {
+            if (enter) {
+                this.maxDepth = Math.max(this.maxDepth, this.depth);
+                if ((++this.nodes & SolveControl.POLL_INTERVAL - 1) == 0
+                        && this.control.poll(SolveControl.POLL_INTERVAL, this.depth)) {
+                    return false;
+                } else if (!this.state.isEveryWrongCellReachable()) {
+                    ++this.unreachablePrunes;
+                } else if (this.state.isSolved()) {
+                    return true;
+                } else if (transpositionTable != null && transpositionTable.contains(this.state.getHash())) {
+                    ++this.transpositionHits;
+                } else {
+                    int cell = this.selectCell();
+                    if (cell != -1) {
+                        this.stackCells[this.depth] = cell;
+                        this.stackOptions[this.depth] = -1;
+                        this.stackNumbers[this.depth] = (byte) this.state.getNumber(cell);
+                        this.stackCosts[this.depth++] = cost;
+                        if (this.domains[cell] != null) {
+                            this.state.setNumber(cell, 0);
+                        }
+                    }
+                }
+            }
+            if (this.depth == 0) {
+                return false;
+            }
+            int level = this.depth - 1;
+            int cell = this.stackCells[level];
+            if (this.advance(level, bound)) {
+                cost = this.stackCosts[level] + this.getCost(level);
+                enter = true;
+            } else {
+                --this.depth;
+                if (this.domains[cell] != null) {
+                    this.choices[cell] = -1;
+                    this.state.setNumber(cell, this.stackNumbers[level]);
+                }
+                if (transpositionTable != null) {
+                    transpositionTable.add(this.state.getHash(), this.state.getWaveableCount());
+                }
+                enter = false;
+            }
+        }
+    }
+
+    private int selectCell() {
+        int fallback = -1;
+        for (int cell = this.state.nextWaveable(0); cell != -1; cell = this.state.nextWaveable(cell + 1)) {
+            if (this.domains[cell] != null) {
+                return cell;
+            } else if (fallback == -1) {
+                fallback = cell;
+            }
+        }
+        return fallback;
+    }
+
+    // Moves level on to its next option within bound. Returns false with the level's option undone if there is none.
+    private boolean advance(int level, int bound) {
+        int cell = this.stackCells[level];
+        CellDomain domain = this.domains[cell];
+        int option = this.stackOptions[level];
+        this.retract(level);
+        for (;;) {
+            ++option;
+            if (domain != null ? option == domain.size() : option > STOP) {
+                return false;
+            } else if (domain != null && !this.state.isEveryWrongCellReachable(domain.getMasks(),
+                    domain.getMaskOffset(option))) {
+                ++this.inviableEntries;
+                continue;
+            } else if (domain == null && option < STOP && this.state.isBlocked(cell, DIRECTIONS[option])) {
+                continue;
+            }
+            this.stackOptions[level] = option;
+            int cost = this.getCost(level);
+            if (bound - this.stackCosts[level] < cost) {
+                this.nextBound = Math.min(this.nextBound, this.stackCosts[level] + cost);
+                continue;
+            }
+            if (domain != null) {
+                this.state.toggle(domain.getMasks(), domain.getMaskOffset(option), domain.getHash(option));
+                this.choices[cell] = option;
+            } else if (option < STOP) {
+                this.state.wave(cell, DIRECTIONS[option]);
+            } else {
+                this.state.setNumber(cell, 0);
+            }
+            return true;
+        }
+    }
+
+    private void retract(int level) {
+        int cell = this.stackCells[level];
+        CellDomain domain = this.domains[cell];
+        int option = this.stackOptions[level];
+        if (option == -1) {
+            return;
+        } else if (domain != null) {
+            this.state.toggle(domain.getMasks(), domain.getMaskOffset(option), domain.getHash(option));
+        } else if (option < STOP) {
+            this.state.reverseWave(cell, DIRECTIONS[option]);
+        } else {
+            this.state.setNumber(cell, this.stackNumbers[level]);
+        }
+        this.stackOptions[level] = -1;
+    }
+
+    private int getCost(int level) {
+        int cell = this.stackCells[level];
+        int option = this.stackOptions[level];
+        CellDomain domain = this.domains[cell];
+        return switch (this.objective) {
+            case FEWEST_WAVES -> domain != null ? domain.getWaveCount(option) : option < STOP ? 1 : 0;
+            case FEWEST_USED_NUMBERS -> domain != null ? (domain.getWaveCount(option) == 0 ? 0 : 1)
+                    : option < STOP && this.stackNumbers[level] == this.numbers[cell] ? 1 : 0;
+            case ANY -> 0;
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package dev.nicotopia.wms;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import dev.nicotopia.wms.Game.Direction;
+
+public class WaveTable {
+    private record Geometry(int width, int height) {
+    }
+
+    private static final int DIRECTIONS = Direction.values().length;
+    private static final Map<Geometry, WaveTable> TABLES = new ConcurrentHashMap<>();
+
+    public static WaveTable get(int width, int height) {
+        return TABLES.computeIfAbsent(new Geometry(width, height), g -> new WaveTable(g.width, g.height));
+    }
+
+    private final int width;
+    private final int height;
+    private final int words;
+    private final int lengths;
+    private final long masks[];
+
+    private WaveTable(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.words = GameState.wordCount(width * height);
+        this.lengths = Math.max(width, height);
+        this.masks = new long[width * height * DIRECTIONS * this.lengths * this.words];
+        for (int cell = 0; cell < width * height; ++cell) {
+            for (Direction dir : Direction.values()) {
+                for (int length = 0; length < this.lengths; ++length) {
+                    int offset = this.getOffset(cell, dir, length);
+                    int x = cell % width;
+                    int y = cell / width;
+                    for (int i = 0; i <= length; ++i) {
+                        int x1 = x + i * switch (dir) {
+                            case LEFT -> -1;
+                            case RIGHT -> 1;
+                            case UP, DOWN -> 0;
+                        };
+                        int y1 = y + i * switch (dir) {
+                            case UP -> -1;
+                            case DOWN -> 1;
+                            case LEFT, RIGHT -> 0;
+                        };
+                        if (0 <= x1 && x1 < width && 0 <= y1 && y1 < height) {
+                            int c = y1 * width + x1;
+                            this.masks[offset + (c >>> 6)] |= 1L << c;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getWordCount() {
+        return this.words;
+    }
+
+    public boolean isBlocked(int cell, Direction dir) {
+        return switch (dir) {
+            case LEFT -> cell % this.width == 0;
+            case UP -> cell < this.width;
+            case RIGHT -> cell % this.width == this.width - 1;
+            case DOWN -> (this.height - 1) * this.width <= cell;
+        };
+    }
+
+    public int getOffset(int cell, Direction dir, int length) {
+        return ((cell * DIRECTIONS + dir.ordinal()) * this.lengths
+                + Math.min(length, this.lengths - 1)) * this.words;
+    }
+
+    public long[] getMasks() {
+        return this.masks;
+    }
+}
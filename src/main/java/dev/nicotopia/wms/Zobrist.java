@@ -0,0 +1,32 @@
+package dev.nicotopia.wms;
+
+final class Zobrist {
+    private static final long NUMBER_SALT = 0x5851f42d4c957f2dL;
+
+    private Zobrist() {
+    }
+
+    static long cell(int cell) {
+        return mix(cell);
+    }
+
+    static long number(int cell, int number) {
+        return number == 0 ? 0 : mix(((long) cell << 32 | number) ^ NUMBER_SALT);
+    }
+
+    static long mask(long masks[], int offset, int words) {
+        long hash = 0;
+        for (int i = 0; i < words; ++i) {
+            for (long w = masks[offset + i]; w != 0; w &= w - 1) {
+                hash ^= cell((i << 6) + Long.numberOfTrailingZeros(w));
+            }
+        }
+        return hash;
+    }
+
+    static long mix(long z) {
+        z = (z ^ z >>> 30) * 0xbf58476d1ce4e5b9L + 0x9e3779b97f4a7c15L;
+        z = (z ^ z >>> 27) * 0x94d049bb133111ebL;
+        return z ^ z >>> 31;
+    }
+}
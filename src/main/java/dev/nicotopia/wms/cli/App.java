@@ -0,0 +1,165 @@
+package dev.nicotopia.wms.cli;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import dev.nicotopia.wms.BatchSolver;
+import dev.nicotopia.wms.Game;
+import dev.nicotopia.wms.PuzzleFormat;
+import dev.nicotopia.wms.Solution;
+import dev.nicotopia.wms.SolutionCache;
+import dev.nicotopia.wms.Solver;
+
+public class App {
+    private static final String PUZZLE_EXTENSION = ".wms";
+    private static final String SOLUTION_EXTENSION = ".solution";
+    private static final int CACHE_ENTRIES = 1 << 12;
+
+    public static void main(String[] args) throws IOException {
+        App app = new App();
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--out" -> app.outputDir = Path.of(argument(args, ++i));
+                case "--timeout" -> app.timeout = Duration.ofMillis(Long.parseLong(argument(args, ++i)));
+                case "--strategy" -> app.strategy = Solver.Strategy.valueOf(argument(args, ++i));
+                case "--objective" -> app.objective = Solver.Objective.valueOf(argument(args, ++i));
+                case "--threads" -> app.threads = Integer.parseInt(argument(args, ++i));
+                case "--cache" -> app.cacheFile = Path.of(argument(args, ++i));
+                default -> inputs.add(Path.of(args[i]));
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: App [--out DIR] [--timeout MILLIS] [--strategy "
+                    + Stream.of(Solver.Strategy.values()).map(Enum::name).reduce((a, b) -> a + "|" + b).get()
+                    + "] [--objective "
+                    + Stream.of(Solver.Objective.values()).map(Enum::name).reduce((a, b) -> a + "|" + b).get()
+                    + "] [--threads N] [--cache FILE] FILE|DIR...");
+            System.exit(2);
+        }
+        System.exit(app.solveAll(inputs) ? 0 : 1);
+    }
+
+    private static String argument(String args[], int i) {
+        if (args.length <= i) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    private Path outputDir;
+    private Duration timeout = Duration.ZERO;
+    private Solver.Strategy strategy = Solver.Strategy.LINEAR_ALGEBRA;
+    private Solver.Objective objective = Solver.Objective.ANY;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Path cacheFile;
+
+    private boolean solveAll(List<Path> inputs) throws IOException {
+        List<Path> puzzles = new ArrayList<>();
+        // Where each puzzle's solution goes below the output directory: the same place as the puzzle below its input.
+        List<Path> solutionFiles = new ArrayList<>();
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> files = Files.walk(input)) {
+                    files.filter(p -> p.getFileName().toString().endsWith(PUZZLE_EXTENSION)).sorted().forEach(p -> {
+                        puzzles.add(p);
+                        solutionFiles.add(solutionFile(input.relativize(p)));
+                    });
+                }
+            } else {
+                puzzles.add(input);
+                solutionFiles.add(solutionFile(input.getFileName()));
+            }
+        }
+        boolean ok = true;
+        Set<Path> claimed = new HashSet<>();
+        // Games are read lazily while the batch solver pulls them, so the i-th game read is the i-th entry of read.
+        List<Integer> read = new ArrayList<>();
+        Iterator<Game> games = IntStream.range(0, puzzles.size()).mapToObj(i -> {
+            Path puzzle = puzzles.get(i);
+            if (this.outputDir != null && !claimed.add(solutionFiles.get(i))) {
+                System.err.println(puzzle + ": " + this.outputDir.resolve(solutionFiles.get(i))
+                        + " is already written for another puzzle");
+                return null;
+            }
+            try (Reader reader = Files.newBufferedReader(puzzle)) {
+                Game game = PuzzleFormat.read(reader);
+                read.add(i);
+                return game;
+            } catch (IOException ex) {
+                System.err.println(puzzle + ": " + ex.getMessage());
+                return null;
+            }
+        }).filter(Objects::nonNull).iterator();
+        try (BatchSolver batchSolver = new BatchSolver(this.threads);
+                SolutionCache cache = this.cacheFile == null ? null : new SolutionCache(this.cacheFile, CACHE_ENTRIES)) {
+            batchSolver.setSolutionCache(cache);
+            batchSolver.setOrder(BatchSolver.Order.INPUT);
+            batchSolver.setStrategy(this.strategy);
+            batchSolver.setObjective(this.objective);
+            batchSolver.setTimeout(this.timeout);
+            for (Iterator<BatchSolver.Result> results = batchSolver.solve(games); results.hasNext();) {
+                BatchSolver.Result result = results.next();
+                int i = read.get(result.index());
+                ok &= this.write(puzzles.get(i), solutionFiles.get(i), result);
+            }
+        }
+        return ok && read.size() == puzzles.size();
+    }
+
+    private static Path solutionFile(Path puzzle) {
+        String name = puzzle.getFileName().toString();
+        if (name.endsWith(PUZZLE_EXTENSION)) {
+            name = name.substring(0, name.length() - PUZZLE_EXTENSION.length());
+        }
+        return puzzle.resolveSibling(name + SOLUTION_EXTENSION);
+    }
+
+    private boolean write(Path puzzle, Path solutionFile, BatchSolver.Result result) throws IOException {
+        if (result.error() != null) {
+            System.err.println(puzzle + ": " + result.error().getMessage());
+            return false;
+        }
+        Game game = result.game();
+        Solution solution = result.solution();
+        if (this.outputDir == null) {
+            PrintWriter out = new PrintWriter(System.out);
+            out.println(puzzle);
+            this.writeSolution(game, solution, out);
+            out.flush();
+        } else {
+            Path file = this.outputDir.resolve(solutionFile);
+            Files.createDirectories(file.getParent());
+            try (Writer writer = Files.newBufferedWriter(file)) {
+                this.writeSolution(game, solution, writer);
+            }
+        }
+        return solution.getOutcome() == Solver.Outcome.SOLVED;
+    }
+
+    private void writeSolution(Game game, Solution solution, Writer writer) throws IOException {
+        writer.write(solution.getOutcome() + "\n");
+        if (solution.getOutcome() == Solver.Outcome.SOLVED) {
+            for (int y = 0; y < game.getHeight(); ++y) {
+                String cells[] = new String[game.getWidth()];
+                for (int x = 0; x < game.getWidth(); ++x) {
+                    cells[x] = PuzzleFormat.formatDirections(solution.getCellDirections(x, y));
+                }
+                writer.write(String.join(" ", cells) + "\n");
+            }
+        }
+    }
+}
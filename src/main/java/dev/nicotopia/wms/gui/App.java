@@ -19,6 +19,7 @@ import javax.swing.JSpinner;
 import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
 
 import dev.nicotopia.wms.Game;
 import dev.nicotopia.wms.Game.SplitType;
@@ -35,9 +36,10 @@ public class App extends JFrame {
     private final GamePanel gamePanel;
     private final JSpinner rowsSpinner = new JSpinner(new SpinnerNumberModel(5, 5, 20, 1));
     private final JSpinner colsSpinner = new JSpinner(new SpinnerNumberModel(5, 5, 25, 1));
-    private final SolverRunnable solverRunnable = new SolverRunnable(this::onSolvingFinished);
+    private final SolverRunnable solverRunnable = new SolverRunnable(this::onSolvingFinished, this::onSolvingProgress);
     private final Map<SplitType, JToggleButton> splitTypeButtons = new EnumMap<>(SplitType.class);
     private final JToggleButton solveButton;
+    private final JLabel progressLabel = new JLabel();
 
     public App() throws IOException {
         this.setTitle("Wave Mechanics Solver");
@@ -85,6 +87,8 @@ public class App extends JFrame {
         solveButton.addActionListener(this::onSolutionButton);
         this.toolBar.addSeparator();
         this.toolBar.add(solveButton);
+        this.toolBar.addSeparator();
+        this.toolBar.add(this.progressLabel);
         this.add(this.toolBar, BorderLayout.NORTH);
         this.add(this.gamePanel, BorderLayout.SOUTH);
         Thread solverThread = new Thread(this.solverRunnable);
@@ -93,6 +97,7 @@ public class App extends JFrame {
     }
 
     public void setGame(Game game) {
+        this.solverRunnable.cancel();
         this.gamePanel.setGame(game);
         this.colsSpinner.setValue(game.getWidth());
         this.rowsSpinner.setValue(game.getHeight());
@@ -106,19 +111,39 @@ public class App extends JFrame {
             this.getContentPane().setEnabled(true);
             this.solverRunnable.startSolving(this.gamePanel.getGame());
         } else {
+            this.solverRunnable.cancel();
             this.gamePanel.hideSolution();
         }
     }
 
-    public void onSolvingFinished(boolean solved, Solver solver) {
-        if (solved) {
-            this.gamePanel.showSolution(solver);
-        } else {
-            JOptionPane.showMessageDialog(this, "Game is not solvable", "Result", JOptionPane.WARNING_MESSAGE);
-            this.gamePanel.hideSolution();
-            this.solveButton.setSelected(false);
-        }
-        this.getContentPane().setEnabled(true);
+    public void onSolvingProgress(long nodes, int depth, double nodesPerSecond) {
+        SwingUtilities.invokeLater(() -> this.progressLabel
+                .setText(String.format("%,d nodes, depth %d, %,.0f nodes/s", nodes, depth, nodesPerSecond)));
+    }
+
+    public void onSolvingFinished(boolean solved, Solver solver, RuntimeException error) {
+        SwingUtilities.invokeLater(() -> {
+            this.progressLabel.setText("");
+            if (error != null) {
+                this.showFailure("Solving failed: " + error.getMessage());
+            } else {
+                switch (solver.getOutcome()) {
+                    case SOLVED -> this.gamePanel.showSolution(solver);
+                    case CANCELLED -> {
+                    }
+                    case UNSOLVABLE -> this.showFailure("Game is not solvable");
+                    case TIMED_OUT -> this.showFailure("Solving timed out");
+                    case NODE_BUDGET_EXHAUSTED -> this.showFailure("Solving exceeded its node budget");
+                }
+            }
+            this.getContentPane().setEnabled(true);
+        });
+    }
+
+    private void showFailure(String message) {
+        JOptionPane.showMessageDialog(this, message, "Result", JOptionPane.WARNING_MESSAGE);
+        this.gamePanel.hideSolution();
+        this.solveButton.setSelected(false);
     }
 
     private void addSplitTypeButton(ButtonGroup bg, SplitType splitType) throws IOException {
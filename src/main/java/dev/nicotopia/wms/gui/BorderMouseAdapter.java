@@ -3,35 +3,27 @@ package dev.nicotopia.wms.gui;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
-import java.util.HashMap;
-import java.util.Map;
-
-import javax.swing.JLabel;
 
 import dev.nicotopia.wms.Game;
-import dev.nicotopia.wms.Game.Direction;
 
 public class BorderMouseAdapter implements MouseListener, MouseMotionListener {
-    private record RegisterData(Direction dir, int idx) {
-    }
-
     private final Game game;
-    private final Map<JLabel, RegisterData> labels = new HashMap<>();
+    private final GamePanel panel;
+    private GamePanel.BorderSlot slot;
     private boolean down = false;
 
-    public BorderMouseAdapter(Game game) {
+    public BorderMouseAdapter(Game game, GamePanel panel) {
         this.game = game;
-    }
-
-    public void registerLabel(JLabel label, Direction dir, int idx) {
-        this.labels.put(label, new RegisterData(dir, idx));
-        label.addMouseListener(this);
-        label.addMouseMotionListener(this);
+        this.panel = panel;
     }
 
     @Override
     public void mouseDragged(MouseEvent e) {
-
+        GamePanel.BorderSlot slot = this.panel.getBorderSlotAt(e.getPoint());
+        if (this.down && slot != null && !slot.equals(this.slot) && slot.idx() != 0) {
+            this.game.setSplit(slot.dir(), slot.idx());
+        }
+        this.slot = slot;
     }
 
     @Override
@@ -45,7 +37,8 @@ public class BorderMouseAdapter implements MouseListener, MouseMotionListener {
     @Override
     public void mousePressed(MouseEvent e) {
         if (e.getButton() == MouseEvent.BUTTON1) {
-            this.down = true;
+            this.slot = this.panel.getBorderSlotAt(e.getPoint());
+            this.down = this.slot != null;
         }
     }
 
@@ -58,10 +51,6 @@ public class BorderMouseAdapter implements MouseListener, MouseMotionListener {
 
     @Override
     public void mouseEntered(MouseEvent e) {
-        RegisterData data = this.labels.get(e.getSource());
-        if (this.down && data != null && data.idx != 0) {
-            this.game.setSplit(data.dir, data.idx);
-        }
     }
 
     @Override
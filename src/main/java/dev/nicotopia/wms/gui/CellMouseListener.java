@@ -1,44 +1,37 @@
 package dev.nicotopia.wms.gui;
 
+import java.awt.Point;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 
-import javax.swing.JLabel;
-
 import dev.nicotopia.wms.Game;
 import dev.nicotopia.wms.Game.Color;
-import dev.nicotopia.wms.Game.Direction;;
-
-public class CellMouseListener implements MouseListener, MouseWheelListener {
-    private record Position(int x, int y) {
-    }
+import dev.nicotopia.wms.Game.Direction;
 
+public class CellMouseListener implements MouseListener, MouseMotionListener, MouseWheelListener {
     private final Game game;
+    private final GamePanel panel;
     private Optional<MouseEvent> mouseBtn1DownEvt = Optional.empty();
+    private Optional<Point> mouseBtn1DownCell = Optional.empty();
     private Optional<Color> paintColor = Optional.empty();
-    private final Map<JLabel, Position> labelPositions = new HashMap<>();
+    private Point paintedCell;
 
-    public CellMouseListener(Game game) {
+    public CellMouseListener(Game game, GamePanel panel) {
         this.game = game;
-    }
-
-    public void registerLabel(JLabel label, int x, int y) {
-        label.addMouseListener(this);
-        label.addMouseWheelListener(this);
-        this.labelPositions.put(label, new Position(x, y));
+        this.panel = panel;
     }
 
     @Override
     public void mousePressed(MouseEvent e) {
-        Position p = this.labelPositions.get(e.getSource());
+        Point p = this.panel.getCellAt(e.getPoint());
         if (p != null) {
             if (e.getButton() == MouseEvent.BUTTON1) {
                 this.mouseBtn1DownEvt = Optional.ofNullable(e);
+                this.mouseBtn1DownCell = Optional.of(p);
             } else if (e.getButton() == MouseEvent.BUTTON2) {
                 int number = this.game.getNumber(p.x, p.y);
                 Color color = this.game.getColor(p.x, p.y);
@@ -46,6 +39,7 @@ public class CellMouseListener implements MouseListener, MouseWheelListener {
             } else if (e.getButton() == MouseEvent.BUTTON3) {
                 this.game.switchColor(p.x, p.y);
                 this.paintColor = Optional.of(this.game.getColor(p.x, p.y));
+                this.paintedCell = p;
             }
         }
     }
@@ -53,7 +47,7 @@ public class CellMouseListener implements MouseListener, MouseWheelListener {
     @Override
     public void mouseReleased(MouseEvent e) {
         if (e.getButton() == MouseEvent.BUTTON1) {
-            this.mouseBtn1DownEvt.map(evt -> evt.getSource()).map(this.labelPositions::get).ifPresent(p -> {
+            this.mouseBtn1DownCell.ifPresent(p -> {
                 int hor = e.getX() - this.mouseBtn1DownEvt.get().getX();
                 int ver = e.getY() - this.mouseBtn1DownEvt.get().getY();
                 if (16 < Math.max(Math.abs(hor), Math.abs(ver))) {
@@ -67,6 +61,8 @@ public class CellMouseListener implements MouseListener, MouseWheelListener {
                     }
                 }
             });
+            this.mouseBtn1DownEvt = Optional.empty();
+            this.mouseBtn1DownCell = Optional.empty();
         } else if (e.getButton() == MouseEvent.BUTTON3) {
             this.paintColor = Optional.empty();
         }
@@ -78,19 +74,28 @@ public class CellMouseListener implements MouseListener, MouseWheelListener {
 
     @Override
     public void mouseEntered(MouseEvent e) {
-        Position p = this.labelPositions.get(e.getSource());
-        if (p != null && this.paintColor.isPresent()) {
+    }
+
+    @Override
+    public void mouseExited(MouseEvent e) {
+    }
+
+    @Override
+    public void mouseDragged(MouseEvent e) {
+        Point p = this.panel.getCellAt(e.getPoint());
+        if (p != null && !p.equals(this.paintedCell) && this.paintColor.isPresent()) {
             this.game.setCell(p.x, p.y, this.paintColor.get(), this.game.getNumber(p.x, p.y));
         }
+        this.paintedCell = p;
     }
 
     @Override
-    public void mouseExited(MouseEvent e) {
+    public void mouseMoved(MouseEvent e) {
     }
 
     @Override
     public void mouseWheelMoved(MouseWheelEvent e) {
-        Position p = this.labelPositions.get(e.getSource());
+        Point p = this.panel.getCellAt(e.getPoint());
         if (p != null) {
             Color color = this.game.getColor(p.x, p.y);
             int n = this.game.getNumber(p.x, p.y) + (e.getUnitsToScroll() < 0 ? 1 : -1);
@@ -3,25 +3,32 @@ package dev.nicotopia.wms.gui;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
-import java.awt.GridBagConstraints;
-import java.awt.GridBagLayout;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Insets;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.swing.JLabel;
 import javax.swing.JPanel;
-import javax.swing.SwingConstants;
-import javax.swing.border.LineBorder;
 
 import dev.nicotopia.wms.Game;
 import dev.nicotopia.wms.Game.Direction;
-import dev.nicotopia.wms.Solver;
+import dev.nicotopia.wms.Solution;
 
+// Paints the whole board from the game in one pass. Changes only repaint the cell or border side they affect, and
+// painting skips everything outside the clip.
 public class GamePanel extends JPanel implements Game.CellListener, Game.SplitListener {
+    public record BorderSlot(Direction dir, int idx) {
+    }
+
     private static final Dimension CELL_DIMENSION = new Dimension(76, 80);
     private static final int CELL_BORDER_WIDTH = 5;
     private static final int GAME_BORDER_WIDTH = 24;
@@ -30,6 +37,11 @@ public class GamePanel extends JPanel implements Game.CellListener, Game.SplitLi
     private static final Insets LEFT_BORDER_INSETS = new Insets(0, 0, 0, 32);
     private static final Insets BOTTOM_BORDER_INSETS = new Insets(28, 0, 0, 0);
     private static final Insets RIGHT_BORDER_INSETS = new Insets(0, 16, 0, 0);
+    private static final int CELL_PITCH_X = CELL_INSETS.left + CELL_DIMENSION.width + CELL_INSETS.right;
+    private static final int CELL_PITCH_Y = CELL_INSETS.top + CELL_DIMENSION.height + CELL_INSETS.bottom;
+    private static final int BOARD_X = GAME_BORDER_WIDTH + LEFT_BORDER_INSETS.right;
+    private static final int BOARD_Y = GAME_BORDER_WIDTH + TOP_BORDER_INSETS.bottom;
+    private static final int ARROWS_PER_LINE = 3;
     private static final Color CELL_COLOR_0 = new Color(52, 125, 255);
     private static final Color CELL_COLOR_1 = new Color(255, 189, 52);
     private static final Color BORDER_COLOR_0 = new Color(0, 72, 213);
@@ -37,151 +49,244 @@ public class GamePanel extends JPanel implements Game.CellListener, Game.SplitLi
     private static final Font CELL_FONT = new Font("DejaVu Sans", Font.BOLD, 28);
     private static final Font CELL_SOLUTION_FONT = new Font("DejaVu Sans Mono", Font.PLAIN, 20);
 
+    private record GlyphKey(Font font, String text) {
+    }
+
     private Game game;
-    private List<JLabel> cellLabels = new ArrayList<>();
-    private Map<Direction, List<JLabel>> borderLabels = new HashMap<>();
     private CellMouseListener cellMouseListener;
     private BorderMouseAdapter borderMouseAdapter;
-
-    public GamePanel() {
-        Arrays.stream(Direction.values()).forEach(d -> this.borderLabels.put(d, new ArrayList<>()));
-    }
+    // One entry per cell holding its solution text line by line, null for cells showing their number.
+    private String solutionLines[][];
+    private final Map<GlyphKey, GlyphVector> glyphs = new HashMap<>();
+    private FontRenderContext glyphContext;
 
     public Game getGame() {
         return this.game;
     }
 
     public void setGame(Game game) {
+        if (this.game != null) {
+            this.game.removeCellListener(this);
+            this.game.removeSplitListener(this);
+            this.removeMouseListener(this.cellMouseListener);
+            this.removeMouseMotionListener(this.cellMouseListener);
+            this.removeMouseWheelListener(this.cellMouseListener);
+            this.removeMouseListener(this.borderMouseAdapter);
+            this.removeMouseMotionListener(this.borderMouseAdapter);
+        }
         this.game = game;
-        this.cellLabels.clear();
-        this.borderLabels.values().forEach(List::clear);
-        this.removeAll();
+        this.solutionLines = null;
         if (this.game != null) {
-            this.cellMouseListener = new CellMouseListener(game);
-            this.borderMouseAdapter = new BorderMouseAdapter(game);
+            this.cellMouseListener = new CellMouseListener(game, this);
+            this.borderMouseAdapter = new BorderMouseAdapter(game, this);
             this.game.addCellListener(this);
             this.game.addSplitListener(this);
-            this.setLayout(new GridBagLayout());
-            for (int x = 0; x < this.game.getWidth(); ++x) {
-                this.addBorderLabel(Direction.UP, x);
-            }
-            for (int y = 0; y < this.game.getHeight(); ++y) {
-                this.addBorderLabel(Direction.LEFT, y);
-                for (int x = 0; x < this.game.getWidth(); ++x) {
-                    this.addCellLabel(x, y);
-                }
-                this.addBorderLabel(Direction.RIGHT, y);
-            }
-            for (int x = 0; x < this.game.getWidth(); ++x) {
-                this.addBorderLabel(Direction.DOWN, x);
-            }
-            Arrays.stream(Direction.values()).forEach(this::onSplitChange);
+            this.addMouseListener(this.cellMouseListener);
+            this.addMouseMotionListener(this.cellMouseListener);
+            this.addMouseWheelListener(this.cellMouseListener);
+            this.addMouseListener(this.borderMouseAdapter);
+            this.addMouseMotionListener(this.borderMouseAdapter);
         }
-
+        this.revalidate();
+        this.repaint();
     }
 
-    public void showSolution(Solver solver) {
+    public void showSolution(Solution solution) {
+        this.solutionLines = new String[this.game.getWidth() * this.game.getHeight()][];
         for (int y = 0; y < this.game.getHeight(); ++y) {
             for (int x = 0; x < this.game.getWidth(); ++x) {
-                JLabel label = this.cellLabels.get(y * this.game.getWidth() + x);
-                label.setFont(CELL_SOLUTION_FONT);
-                String steps[] = solver.getCellDirections(x, y).stream().map(d -> switch (d) {
-                    case LEFT -> "\u2190";
-                    case UP -> "\u2191";
-                    case RIGHT -> "\u2192";
-                    case DOWN -> "\u2193";
-                }).toArray(String[]::new);
-                StringBuilder solution = new StringBuilder("<html>");
-                for (int i = 0; i < steps.length; ++i) {
-                    solution.append(steps[i]).append((i + 1) % 3 == 0 ? "<br>" : " ");
+                List<Direction> dirs = solution.getCellDirections(x, y);
+                String lines[] = new String[(dirs.size() + ARROWS_PER_LINE - 1) / ARROWS_PER_LINE];
+                for (int i = 0; i < lines.length; ++i) {
+                    StringBuilder line = new StringBuilder();
+                    for (Direction dir : dirs.subList(i * ARROWS_PER_LINE,
+                            Math.min(dirs.size(), (i + 1) * ARROWS_PER_LINE))) {
+                        line.append(line.isEmpty() ? "" : " ").append(switch (dir) {
+                            case LEFT -> '\u2190';
+                            case UP -> '\u2191';
+                            case RIGHT -> '\u2192';
+                            case DOWN -> '\u2193';
+                        });
+                    }
+                    lines[i] = line.toString();
                 }
-                label.setText(solution.append("</html>").toString());
+                this.solutionLines[y * this.game.getWidth() + x] = lines;
             }
         }
+        this.repaint();
     }
 
     public void hideSolution() {
-        for (int y = 0; y < this.game.getHeight(); ++y) {
-            for (int x = 0; x < this.game.getWidth(); ++x) {
-                this.onCellChange(x, y);
+        this.solutionLines = null;
+        this.repaint();
+    }
+
+    public Rectangle getCellBounds(int x, int y) {
+        return new Rectangle(BOARD_X + x * CELL_PITCH_X + CELL_INSETS.left,
+                BOARD_Y + y * CELL_PITCH_Y + CELL_INSETS.top, CELL_DIMENSION.width, CELL_DIMENSION.height);
+    }
+
+    public Rectangle getBorderBounds(Direction dir, int idx) {
+        Dimension size = this.getPreferredSize();
+        return switch (dir) {
+            case UP, DOWN -> {
+                int x0 = idx == 0 ? 0 : BOARD_X + idx * CELL_PITCH_X;
+                int x1 = idx == this.game.getWidth() - 1 ? size.width : BOARD_X + (idx + 1) * CELL_PITCH_X;
+                yield new Rectangle(x0, dir == Direction.UP ? 0 : size.height - GAME_BORDER_WIDTH, x1 - x0,
+                        GAME_BORDER_WIDTH);
+            }
+            case LEFT, RIGHT -> {
+                int y0 = idx == 0 ? 0 : BOARD_Y + idx * CELL_PITCH_Y;
+                int y1 = idx == this.game.getHeight() - 1 ? size.height : BOARD_Y + (idx + 1) * CELL_PITCH_Y;
+                yield new Rectangle(dir == Direction.LEFT ? 0 : size.width - GAME_BORDER_WIDTH, y0,
+                        GAME_BORDER_WIDTH, y1 - y0);
             }
+        };
+    }
+
+    // The cell whose square contains p, or null.
+    public Point getCellAt(Point p) {
+        if (this.game == null || p.x < BOARD_X || p.y < BOARD_Y) {
+            return null;
+        }
+        int x = (p.x - BOARD_X) / CELL_PITCH_X;
+        int y = (p.y - BOARD_Y) / CELL_PITCH_Y;
+        if (this.game.getWidth() <= x || this.game.getHeight() <= y || !this.getCellBounds(x, y).contains(p)) {
+            return null;
         }
+        return new Point(x, y);
     }
 
-    private void addCellLabel(int x, int y) {
-        int number = this.game.getNumber(x, y);
-        JLabel label = new JLabel(number == 0 ? "" : String.valueOf(number), SwingConstants.CENTER);
-        label.setForeground(Color.WHITE);
-        label.setPreferredSize(CELL_DIMENSION);
-        this.cellMouseListener.registerLabel(label, x, y);
-        GridBagConstraints gbc = new GridBagConstraints();
-        gbc.insets = CELL_INSETS;
-        gbc.gridx = x + 1;
-        gbc.gridy = y + 1;
-        this.add(label, gbc);
-        this.cellLabels.add(label);
-        this.onCellChange(x, y);
-    }
-
-    private void addBorderLabel(Direction dir, int i) {
-        JLabel borderLabel = new JLabel();
-        borderLabel.setOpaque(true);
-        borderLabel.setPreferredSize(switch (dir) {
-            case UP, DOWN -> new Dimension(0, GAME_BORDER_WIDTH);
-            case LEFT, RIGHT -> new Dimension(GAME_BORDER_WIDTH, 0);
-        });
-        GridBagConstraints gbc = new GridBagConstraints();
-        gbc.fill = GridBagConstraints.BOTH;
-        gbc.insets = switch (dir) {
-            case LEFT -> LEFT_BORDER_INSETS;
-            case RIGHT -> RIGHT_BORDER_INSETS;
-            case UP -> TOP_BORDER_INSETS;
-            case DOWN -> BOTTOM_BORDER_INSETS;
-        };
-        gbc.gridx = switch (dir) {
-            case LEFT -> 0;
-            case RIGHT -> this.game.getWidth() + 1;
-            default -> i == 0 ? 0 : i + 1;
-        };
-        gbc.gridy = switch (dir) {
-            case UP -> 0;
-            case DOWN -> this.game.getHeight() + 1;
-            default -> i == 0 ? 0 : i + 1;
-        };
-        if ((dir == Direction.UP || dir == Direction.DOWN) && (i == 0 || i == this.game.getWidth() - 1)) {
-            gbc.gridwidth = 2;
+    // The border segment containing p, or null. The corners belong to the top and bottom sides.
+    public BorderSlot getBorderSlotAt(Point p) {
+        if (this.game == null) {
+            return null;
         }
-        if ((dir == Direction.LEFT || dir == Direction.RIGHT) && (i == 0 || i == this.game.getHeight() - 1)) {
-            gbc.gridheight = 2;
+        Dimension size = this.getPreferredSize();
+        if (p.y < GAME_BORDER_WIDTH || size.height - GAME_BORDER_WIDTH <= p.y) {
+            int idx = Math.max(0, Math.min((p.x - BOARD_X) / CELL_PITCH_X, this.game.getWidth() - 1));
+            Direction dir = p.y < GAME_BORDER_WIDTH ? Direction.UP : Direction.DOWN;
+            return this.getBorderBounds(dir, idx).contains(p) ? new BorderSlot(dir, idx) : null;
+        } else if (p.x < GAME_BORDER_WIDTH || size.width - GAME_BORDER_WIDTH <= p.x) {
+            int idx = Math.max(0, Math.min((p.y - BOARD_Y) / CELL_PITCH_Y, this.game.getHeight() - 1));
+            Direction dir = p.x < GAME_BORDER_WIDTH ? Direction.LEFT : Direction.RIGHT;
+            return this.getBorderBounds(dir, idx).contains(p) ? new BorderSlot(dir, idx) : null;
         }
-        this.borderMouseAdapter.registerLabel(borderLabel, dir, i);
-        this.add(borderLabel, gbc);
-        this.borderLabels.get(dir).add(borderLabel);
+        return null;
     }
 
     @Override
-    public void onCellChange(int x, int y) {
-        JLabel label = this.cellLabels.get(y * this.game.getWidth() + x);
+    public Dimension getPreferredSize() {
+        if (this.isPreferredSizeSet() || this.game == null) {
+            return super.getPreferredSize();
+        }
+        return new Dimension(
+                BOARD_X + this.game.getWidth() * CELL_PITCH_X + RIGHT_BORDER_INSETS.left + GAME_BORDER_WIDTH,
+                BOARD_Y + this.game.getHeight() * CELL_PITCH_Y + BOTTOM_BORDER_INSETS.top + GAME_BORDER_WIDTH);
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        super.paintComponent(graphics);
+        if (this.game == null) {
+            return;
+        }
+        Graphics2D g = (Graphics2D) graphics;
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        if (!g.getFontRenderContext().equals(this.glyphContext)) {
+            this.glyphs.clear();
+            this.glyphContext = g.getFontRenderContext();
+        }
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(this.getPreferredSize());
+        }
+        for (Direction dir : new Direction[] { Direction.LEFT, Direction.RIGHT, Direction.UP, Direction.DOWN }) {
+            int count = dir == Direction.UP || dir == Direction.DOWN ? this.game.getWidth() : this.game.getHeight();
+            for (int i = 0; i < count; ++i) {
+                Rectangle bounds = this.getBorderBounds(dir, i);
+                if (bounds.intersects(clip)) {
+                    g.setColor(this.getColor(this.game.getBorderColor(dir, i)));
+                    g.fill(bounds);
+                }
+            }
+        }
+        int x0 = Math.max(0, (clip.x - BOARD_X) / CELL_PITCH_X);
+        int y0 = Math.max(0, (clip.y - BOARD_Y) / CELL_PITCH_Y);
+        int x1 = Math.min(this.game.getWidth() - 1, (clip.x + clip.width - BOARD_X) / CELL_PITCH_X);
+        int y1 = Math.min(this.game.getHeight() - 1, (clip.y + clip.height - BOARD_Y) / CELL_PITCH_Y);
+        for (int y = y0; y <= y1; ++y) {
+            for (int x = x0; x <= x1; ++x) {
+                this.paintCell(g, x, y);
+            }
+        }
+    }
+
+    private void paintCell(Graphics2D g, int x, int y) {
+        Rectangle bounds = this.getCellBounds(x, y);
         Game.Color color = this.game.getColor(x, y);
-        label.setFont(CELL_FONT);
-        label.setOpaque(color != Game.Color.NONE);
-        label.setBackground(this.getColor(color));
-        label.setBorder(new LineBorder(switch (color) {
+        if (color != Game.Color.NONE) {
+            g.setColor(this.getColor(color));
+            g.fill(bounds);
+        }
+        g.setColor(switch (color) {
             case NONE -> Color.WHITE;
             case COLOR_0 -> BORDER_COLOR_0;
             case COLOR_1 -> BORDER_COLOR_1;
-        }, CELL_BORDER_WIDTH));
-        int number = this.game.getNumber(x, y);
-        label.setText(number == 0 ? "" : String.valueOf(number));
+        });
+        g.fillRect(bounds.x, bounds.y, bounds.width, CELL_BORDER_WIDTH);
+        g.fillRect(bounds.x, bounds.y + bounds.height - CELL_BORDER_WIDTH, bounds.width, CELL_BORDER_WIDTH);
+        g.fillRect(bounds.x, bounds.y, CELL_BORDER_WIDTH, bounds.height);
+        g.fillRect(bounds.x + bounds.width - CELL_BORDER_WIDTH, bounds.y, CELL_BORDER_WIDTH, bounds.height);
+        g.setColor(Color.WHITE);
+        String lines[] = this.solutionLines == null ? null : this.solutionLines[y * this.game.getWidth() + x];
+        if (lines != null) {
+            this.paintLines(g, bounds, CELL_SOLUTION_FONT, lines);
+        } else if (this.game.getNumber(x, y) != 0) {
+            this.paintLines(g, bounds, CELL_FONT, String.valueOf(this.game.getNumber(x, y)));
+        }
+    }
+
+    private void paintLines(Graphics2D g, Rectangle bounds, Font font, String... lines) {
+        FontMetrics metrics = g.getFontMetrics(font);
+        int y = bounds.y + (bounds.height - lines.length * metrics.getHeight()) / 2 + metrics.getAscent();
+        for (String line : lines) {
+            GlyphVector glyphVector = this.glyphs.computeIfAbsent(new GlyphKey(font, line),
+                    k -> font.createGlyphVector(this.glyphContext, line));
+            float width = (float) glyphVector.getLogicalBounds().getWidth();
+            g.drawGlyphVector(glyphVector, bounds.x + (bounds.width - width) / 2, y);
+            y += metrics.getHeight();
+        }
     }
 
     @Override
-    public void onSplitChange(Direction dir) {
-        List<JLabel> labels = this.borderLabels.get(dir);
-        for (int i = 0; i < labels.size(); ++i) {
-            JLabel label = labels.get(i);
-            label.setBackground(this.getColor(this.game.getBorderColor(dir, i)));
+    public void onCellChange(int x, int y) {
+        if (this.solutionLines != null) {
+            this.solutionLines[y * this.game.getWidth() + x] = null;
         }
+        this.repaint(this.getCellBounds(x, y));
+    }
+
+    @Override
+    public void onCellsChange(Game game, BitSet cells) {
+        Rectangle dirty = null;
+        for (int cell = cells.nextSetBit(0); cell != -1; cell = cells.nextSetBit(cell + 1)) {
+            if (this.solutionLines != null) {
+                this.solutionLines[cell] = null;
+            }
+            Rectangle bounds = this.getCellBounds(cell % game.getWidth(), cell / game.getWidth());
+            dirty = dirty == null ? bounds : dirty.union(bounds);
+        }
+        if (dirty != null) {
+            this.repaint(dirty);
+        }
+    }
+
+    @Override
+    public void onSplitChange(Direction dir) {
+        Rectangle first = this.getBorderBounds(dir, 0);
+        int count = dir == Direction.UP || dir == Direction.DOWN ? this.game.getWidth() : this.game.getHeight();
+        this.repaint(first.union(this.getBorderBounds(dir, count - 1)));
     }
 
     private Color getColor(Game.Color color) {
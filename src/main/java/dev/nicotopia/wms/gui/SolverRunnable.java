@@ -1,38 +1,113 @@
 package dev.nicotopia.wms.gui;
 
+import java.time.Duration;
+
 import dev.nicotopia.wms.Game;
 import dev.nicotopia.wms.Solver;
+import dev.nicotopia.wms.SolverSession;
 
 public class SolverRunnable implements Runnable {
+    // error is the exception that ended the solve, otherwise null. solver is null if it could not even be built.
     public interface FinishedCallback {
-        public void onSolvingFinished(boolean solved, Solver solver);
+        public void onSolvingFinished(boolean solved, Solver solver, RuntimeException error);
     }
 
+    private static final Duration PROGRESS_INTERVAL = Duration.ofMillis(250);
+
     private final FinishedCallback callback;
+    private final Solver.ProgressListener progressListener;
     private Solver solver;
+    private Solver runningSolver;
+    private SolverSession session;
+    private Duration timeout = Duration.ZERO;
+    private long nodeBudget = 0;
+    private boolean instrumented;
 
     public SolverRunnable(FinishedCallback callback) {
+        this(callback, null);
+    }
+
+    public SolverRunnable(FinishedCallback callback, Solver.ProgressListener progressListener) {
         this.callback = callback;
+        this.progressListener = progressListener;
+    }
+
+    public synchronized void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public synchronized void setNodeBudget(long nodeBudget) {
+        this.nodeBudget = nodeBudget;
+    }
+
+    public synchronized void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
     }
 
     @Override
-    public synchronized void run() {
+    public void run() {
         while (!Thread.currentThread().isInterrupted()) {
-            while (this.solver == null) {
-                try {
-                    this.wait();
-                } catch (InterruptedException ex) {
+            Solver solver;
+            synchronized (this) {
+                while (this.solver == null) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
                 }
-            }
-            if (this.solver != null) {
-                callback.onSolvingFinished(this.solver.solve(), solver);
+                solver = this.runningSolver = this.solver;
                 this.solver = null;
             }
+            boolean solved = false;
+            RuntimeException error = null;
+            try {
+                solved = solver.solve();
+            } catch (RuntimeException ex) {
+                error = ex;
+            } finally {
+                synchronized (this) {
+                    this.runningSolver = null;
+                }
+            }
+            this.callback.onSolvingFinished(solved, solver, error);
         }
     }
 
-    public synchronized void startSolving(Game game) {
-        this.solver = new Solver(game);
+    // Returns null if no solver could be built for game, after passing the reason to the callback.
+    public synchronized Solver startSolving(Game game) {
+        this.cancel();
+        Solver solver;
+        try {
+            // Re-solving the same game after an edit keeps the domains and unsolvable states the edit left intact.
+            if (this.session == null || this.session.getGame() != game) {
+                if (this.session != null) {
+                    this.session.close();
+                    this.session = null;
+                }
+                this.session = new SolverSession(game);
+            }
+            solver = this.session.newSolver();
+        } catch (RuntimeException ex) {
+            this.callback.onSolvingFinished(false, null, ex);
+            return null;
+        }
+        solver.setStrategy(Solver.Strategy.LINEAR_ALGEBRA);
+        solver.setTimeout(this.timeout);
+        solver.setNodeBudget(this.nodeBudget);
+        solver.setInstrumented(this.instrumented);
+        if (this.progressListener != null) {
+            solver.setProgressListener(this.progressListener, PROGRESS_INTERVAL);
+        }
+        this.solver = solver;
         this.notifyAll();
+        return solver;
+    }
+
+    public synchronized void cancel() {
+        this.solver = null;
+        if (this.runningSolver != null) {
+            this.runningSolver.cancel();
+        }
     }
 }
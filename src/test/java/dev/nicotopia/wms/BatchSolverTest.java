@@ -0,0 +1,59 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class BatchSolverTest {
+    @Test
+    public void resultsKeepTheInputOrder() {
+        Random random = new Random(13);
+        List<Game> games = new ArrayList<>();
+        for (int i = 0; i < 40; ++i) {
+            games.add(TestBoards.random(random, 3 + random.nextInt(4), 3 + random.nextInt(4), 2 + random.nextInt(5),
+                    3));
+        }
+        try (BatchSolver batchSolver = new BatchSolver(3)) {
+            batchSolver.setOrder(BatchSolver.Order.INPUT);
+            List<BatchSolver.Result> results = batchSolver.solve(games.stream()).collect(Collectors.toList());
+            assertEquals(games.size(), results.size());
+            for (int i = 0; i < games.size(); ++i) {
+                assertEquals(i, results.get(i).index());
+                assertEquals(Solver.Outcome.SOLVED, results.get(i).getOutcome());
+                assertTrue(TestBoards.solves(games.get(i), results.get(i).solution()));
+            }
+        }
+    }
+
+    // Any exception while solving one game is reported in that game's result and the batch goes on.
+    @Test
+    public void failingGamesDoNotEndTheBatch() {
+        Random random = new Random(14);
+        Game failing = new Game(3, 3) {
+            @Override
+            public Color getColor(int x, int y) {
+                throw new IllegalStateException("Broken game");
+            }
+        };
+        List<Game> games = List.of(TestBoards.random(random, 4, 4, 3, 3), failing,
+                TestBoards.random(random, 4, 4, 3, 3));
+        try (BatchSolver batchSolver = new BatchSolver(2)) {
+            batchSolver.setOrder(BatchSolver.Order.INPUT);
+            List<BatchSolver.Result> results = batchSolver.solve(games.stream()).collect(Collectors.toList());
+            assertEquals(3, results.size());
+            assertNull(results.get(0).error());
+            assertTrue(results.get(1).error() instanceof IllegalStateException);
+            assertNull(results.get(1).solution());
+            assertNotNull(results.get(2).solution());
+            assertEquals(Solver.Outcome.SOLVED, results.get(2).getOutcome());
+        }
+    }
+}
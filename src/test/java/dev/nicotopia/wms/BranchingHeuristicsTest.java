@@ -0,0 +1,43 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+// Every heuristic and strategy, alone and in parallel, must decide the same boards as the plain row-major search.
+public class BranchingHeuristicsTest {
+    @Test
+    public void heuristicsAndStrategiesAgreeWithRowMajor() {
+        Random random = new Random(6);
+        for (int i = 0; i < 150; ++i) {
+            Game game = TestBoards.maybeUnsolvable(random, 3 + random.nextInt(4), 3 + random.nextInt(4),
+                    2 + random.nextInt(6), 3);
+            Solver reference = new Solver(game);
+            reference.setBranchingHeuristic(BranchingHeuristics.ROW_MAJOR);
+            reference.setStrategy(Solver.Strategy.DEPTH_FIRST);
+            reference.setSymmetryBreaking(false);
+            boolean solvable = reference.solve();
+            for (BranchingHeuristics heuristic : BranchingHeuristics.values()) {
+                for (Solver.Strategy strategy : Solver.Strategy.values()) {
+                    for (int parallelism : new int[] { 1, 3 }) {
+                        Solver solver = new Solver(game);
+                        solver.setBranchingHeuristic(heuristic);
+                        solver.setStrategy(strategy);
+                        solver.setParallelism(parallelism);
+                        solver.setSplitDepth(1);
+                        String name = heuristic + " " + strategy + " " + parallelism + " on board " + i;
+                        assertEquals(name, solvable, solver.solve());
+                        assertEquals(name, solvable ? Solver.Outcome.SOLVED : Solver.Outcome.UNSOLVABLE,
+                                solver.getOutcome());
+                        if (solvable) {
+                            assertTrue(name, TestBoards.solves(game, solver));
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
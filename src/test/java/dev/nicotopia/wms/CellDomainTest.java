@@ -0,0 +1,79 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import dev.nicotopia.wms.Game.Color;
+import dev.nicotopia.wms.Game.Direction;
+
+public class CellDomainTest {
+    @Test
+    public void entriesAreTheDistinctPatternsWithTheirFewestWaves() {
+        Random random = new Random(2);
+        for (int i = 0; i < 100; ++i) {
+            Game game = TestBoards.random(random, 2 + random.nextInt(5), 2 + random.nextInt(5), 4, 4);
+            GameState state = new GameState(game);
+            List<Map<BitSet, Integer>> patterns = TestBoards.patterns(game);
+            int index = 0;
+            for (int cell = state.nextWaveable(0); cell != -1; cell = state.nextWaveable(cell + 1)) {
+                CellDomain domain = new CellDomain(state, cell);
+                Map<BitSet, Integer> entries = new HashMap<>();
+                for (int entry = 0; entry < domain.size(); ++entry) {
+                    entries.put(toBitSet(domain, entry), domain.getWaveCount(entry));
+                    assertEquals(domain.getWaveCount(entry), domain.getDirections(entry).size());
+                }
+                assertEquals(domain.size(), entries.size());
+                assertEquals(patterns.get(index++), entries);
+                assertTrue(toBitSet(domain, 0).isEmpty());
+            }
+            assertEquals(patterns.size(), index);
+        }
+    }
+
+    @Test
+    public void directionsSendTheEntrysPattern() {
+        Random random = new Random(3);
+        for (int i = 0; i < 100; ++i) {
+            Game game = TestBoards.random(random, 2 + random.nextInt(5), 2 + random.nextInt(5), 4, 4);
+            GameState state = new GameState(game);
+            for (int cell = state.nextWaveable(0); cell != -1; cell = state.nextWaveable(cell + 1)) {
+                CellDomain domain = new CellDomain(state, cell);
+                for (int entry = 0; entry < domain.size(); ++entry) {
+                    Game copy = new Game(game);
+                    for (Direction dir : domain.getDirections(entry)) {
+                        assertTrue(copy.wave(cell % game.getWidth(), cell / game.getWidth(), dir));
+                    }
+                    assertEquals(toBitSet(domain, entry), TestBoards.difference(game, copy));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tooManyPatternsLeaveTheCellWithoutDomain() {
+        Game game = new Game(40, 1);
+        game.setCell(20, 0, Color.COLOR_0, 33);
+        assertNull(CellDomain.tryCreate(new GameState(game), 20));
+        game = new Game(25, 20);
+        game.setCell(12, 10, Color.COLOR_0, 12);
+        assertNull(CellDomain.tryCreate(new GameState(game), game.getWidth() * 10 + 12));
+        game.setCell(12, 10, Color.COLOR_0, 4);
+        assertNotNull(CellDomain.tryCreate(new GameState(game), game.getWidth() * 10 + 12));
+    }
+
+    private static BitSet toBitSet(CellDomain domain, int entry) {
+        long words[] = new long[domain.getMasks().length == 0 ? 0 : domain.getMasks().length / domain.size()];
+        System.arraycopy(domain.getMasks(), domain.getMaskOffset(entry), words, 0, words.length);
+        return BitSet.valueOf(words);
+    }
+}
@@ -0,0 +1,68 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import dev.nicotopia.wms.Game.Color;
+import dev.nicotopia.wms.Game.Direction;
+
+public class GameTest {
+    @Test
+    public void waveSkipsNoneCells() {
+        Game game = new Game(5, 1);
+        for (int x = 0; x < 5; ++x) {
+            game.setCell(x, 0, Color.COLOR_0, 0);
+        }
+        game.setCell(0, 0, Color.COLOR_0, 3);
+        game.setCell(2, 0, Color.NONE, 0);
+        assertTrue(game.wave(0, 0, Direction.RIGHT));
+        assertEquals(Color.COLOR_1, game.getColor(0, 0));
+        assertEquals(Color.COLOR_1, game.getColor(1, 0));
+        assertEquals(Color.NONE, game.getColor(2, 0));
+        assertEquals(Color.COLOR_1, game.getColor(3, 0));
+        assertEquals(Color.COLOR_0, game.getColor(4, 0));
+        assertEquals(2, game.getNumber(0, 0));
+    }
+
+    @Test
+    public void waveIsBlockedAtTheEdge() {
+        Game game = new Game(3, 3);
+        game.setCell(0, 0, Color.COLOR_0, 2);
+        assertFalse(game.wave(0, 0, Direction.LEFT));
+        assertFalse(game.wave(0, 0, Direction.UP));
+        assertEquals(Color.COLOR_0, game.getColor(0, 0));
+        assertEquals(2, game.getNumber(0, 0));
+    }
+
+    @Test
+    public void gameStateWavesLikeGame() {
+        Random random = new Random(1);
+        for (int i = 0; i < 200; ++i) {
+            Game game = TestBoards.random(random, 2 + random.nextInt(9), 2 + random.nextInt(9), 6, 4);
+            GameState state = new GameState(game);
+            for (int wave = 0; wave < 20; ++wave) {
+                int x = random.nextInt(game.getWidth());
+                int y = random.nextInt(game.getHeight());
+                int cell = state.getCell(x, y);
+                Direction dir = Direction.values()[random.nextInt(Direction.values().length)];
+                if (state.canWave(cell)) {
+                    assertEquals(game.wave(x, y, dir), state.wave(cell, dir));
+                }
+            }
+            for (int y = 0; y < game.getHeight(); ++y) {
+                for (int x = 0; x < game.getWidth(); ++x) {
+                    int cell = state.getCell(x, y);
+                    assertEquals(game.getColor(x, y), state.getColor(cell));
+                    assertEquals(game.isCellCorrect(x, y), state.isCorrect(cell));
+                    assertEquals(game.getNumber(x, y), state.getNumber(cell));
+                }
+            }
+            assertEquals(game.isSolved(), state.isSolved());
+        }
+    }
+}
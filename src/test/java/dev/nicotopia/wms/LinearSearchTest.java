@@ -0,0 +1,73 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import dev.nicotopia.wms.Game.Direction;
+
+public class LinearSearchTest {
+    @Test
+    public void reductionKeepsEverySolvableBoard() {
+        Random random = new Random(9);
+        for (int i = 0; i < 300; ++i) {
+            Game game = TestBoards.maybeUnsolvable(random, 3 + random.nextInt(3), 3 + random.nextInt(3),
+                    2 + random.nextInt(5), 3);
+            boolean solvable = TestBoards.leastCost(game, Solver.Objective.ANY) != -1;
+            Search search = newSearch(game);
+            if (!new LinearSearch(search).reduce()) {
+                assertFalse(solvable);
+            } else {
+                // The cells the reduction assigned must not cut off every solution.
+                assertEquals(solvable, search.solve());
+            }
+        }
+    }
+
+    @Test
+    public void nullSpaceEnumerationFindsASolutionIfThereIsOne() {
+        Random random = new Random(10);
+        int enumerated = 0;
+        for (int i = 0; i < 300; ++i) {
+            Game game = TestBoards.maybeUnsolvable(random, 3 + random.nextInt(3), 3 + random.nextInt(3),
+                    2 + random.nextInt(5), 3);
+            boolean solvable = TestBoards.leastCost(game, Solver.Objective.ANY) != -1;
+            Search search = newSearch(game);
+            LinearSearch linear = new LinearSearch(search);
+            if (linear.reduce() && linear.isEnumerable()) {
+                ++enumerated;
+                int choices[] = linear.enumerate();
+                if (!solvable) {
+                    assertNull(choices);
+                } else {
+                    assertNotNull(choices);
+                    Game copy = new Game(game);
+                    for (int cell = 0; cell < choices.length; ++cell) {
+                        if (choices[cell] != -1) {
+                            for (Direction dir : search.getDomain(cell).getDirections(choices[cell])) {
+                                assertTrue(copy.wave(cell % game.getWidth(), cell / game.getWidth(), dir));
+                            }
+                        }
+                    }
+                    assertTrue(copy.isSolved());
+                }
+            }
+        }
+        assertTrue(0 < enumerated);
+    }
+
+    private static Search newSearch(Game game) {
+        GameState state = new GameState(game);
+        CellDomain domains[] = new CellDomain[state.getCellCount()];
+        for (int cell = state.nextWaveable(0); cell != -1; cell = state.nextWaveable(cell + 1)) {
+            domains[cell] = new CellDomain(state, cell);
+        }
+        return new Search(state, domains, BranchingHeuristics.ROW_MAJOR, null, new SolveControl(0, 0, null, 0));
+    }
+}
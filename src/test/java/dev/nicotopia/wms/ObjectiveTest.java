@@ -0,0 +1,60 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ObjectiveTest {
+    @Test
+    public void iterativeDeepeningFindsTheLeastCost() {
+        Random random = new Random(22);
+        for (int i = 0; i < 150; ++i) {
+            Game game = TestBoards.maybeUnsolvable(random, 3 + random.nextInt(4), 3 + random.nextInt(4),
+                    2 + random.nextInt(5), 3);
+            for (Solver.Objective objective : new Solver.Objective[] { Solver.Objective.FEWEST_WAVES,
+                    Solver.Objective.FEWEST_USED_NUMBERS }) {
+                int leastCost = TestBoards.leastCost(game, objective);
+                for (Solver.Strategy strategy : Solver.Strategy.values()) {
+                    Solver solver = new Solver(game);
+                    solver.setObjective(objective);
+                    solver.setStrategy(strategy);
+                    String name = objective + " " + strategy + " on board " + i;
+                    assertEquals(name, leastCost != -1, solver.solve());
+                    if (leastCost != -1) {
+                        assertTrue(name, TestBoards.solves(game, solver));
+                        assertEquals(name, leastCost, objective == Solver.Objective.FEWEST_WAVES
+                                ? TestBoards.countWaves(game, solver) : TestBoards.countUsedNumbers(game, solver));
+                    }
+                }
+            }
+        }
+    }
+
+    // A session keeps the bounds learned for one objective, which must not leak into solves for another.
+    @Test
+    public void sessionsKeepCostsExactAcrossObjectives() {
+        Random random = new Random(23);
+        for (int i = 0; i < 60; ++i) {
+            Game game = TestBoards.random(random, 3 + random.nextInt(4), 3 + random.nextInt(4), 2 + random.nextInt(5),
+                    3);
+            try (SolverSession session = new SolverSession(game)) {
+                for (int solve = 0; solve < 6; ++solve) {
+                    Solver.Objective objective = Solver.Objective.values()[random.nextInt(3)];
+                    Solver solver = session.newSolver();
+                    solver.setObjective(objective);
+                    assertTrue(solver.solve());
+                    assertTrue(TestBoards.solves(game, solver));
+                    if (objective == Solver.Objective.FEWEST_WAVES) {
+                        assertEquals(TestBoards.leastCost(game, objective), TestBoards.countWaves(game, solver));
+                    } else if (objective == Solver.Objective.FEWEST_USED_NUMBERS) {
+                        assertEquals(TestBoards.leastCost(game, objective),
+                                TestBoards.countUsedNumbers(game, solver));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dev.nicotopia.wms.Game.Direction;
+
+public class SolutionCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void solutionsSurviveReopeningTheFile() throws IOException {
+        Path file = this.folder.getRoot().toPath().resolve("solutions.cache");
+        Random random = new Random(14);
+        List<Game> games = new ArrayList<>();
+        List<Solver.Outcome> outcomes = new ArrayList<>();
+        int size;
+        try (SolutionCache cache = new SolutionCache(file, 16)) {
+            for (int i = 0; i < 60; ++i) {
+                Game game = TestBoards.maybeUnsolvable(random, 3 + random.nextInt(4), 3 + random.nextInt(4),
+                        2 + random.nextInt(5), 3);
+                Solver solver = new Solver(game);
+                solver.solve();
+                cache.put(game, solver);
+                games.add(game);
+                outcomes.add(solver.getOutcome());
+            }
+            size = cache.size();
+        }
+        try (SolutionCache cache = new SolutionCache(file, 16)) {
+            assertEquals(size, cache.size());
+            for (int i = 0; i < games.size(); ++i) {
+                Optional<Solution> cached = cache.get(games.get(i));
+                assertTrue(cached.isPresent());
+                assertEquals(outcomes.get(i), cached.get().getOutcome());
+                if (outcomes.get(i) == Solver.Outcome.SOLVED) {
+                    assertTrue(TestBoards.solves(games.get(i), cached.get()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unknownGamesAreMissing() throws IOException {
+        Path file = this.folder.getRoot().toPath().resolve("solutions.cache");
+        Random random = new Random(15);
+        Game game = TestBoards.random(random, 4, 4, 3, 3);
+        try (SolutionCache cache = new SolutionCache(file, 16)) {
+            Solver solver = new Solver(game);
+            solver.solve();
+            cache.put(game, solver);
+        }
+        Game other = new Game(game);
+        other.setCell(0, 0, other.getColor(0, 0), other.getNumber(0, 0) + 1);
+        try (SolutionCache cache = new SolutionCache(file, 16)) {
+            assertTrue(cache.get(game).isPresent());
+            assertFalse(cache.get(other).isPresent());
+        }
+    }
+
+    // The directions of a cell's waves take two bits each, so more than 32 of them no longer fit into one word.
+    @Test
+    public void cellsWithManyWavesSurviveReopeningTheFile() throws IOException {
+        Path file = this.folder.getRoot().toPath().resolve("solutions.cache");
+        Random random = new Random(16);
+        Game game = new Game(3, 3);
+        for (int y = 0; y < 3; ++y) {
+            for (int x = 0; x < 3; ++x) {
+                game.setCell(x, y, game.getTargetColor(x, y), 0);
+            }
+        }
+        List<Direction> waves = new ArrayList<>();
+        for (int wave = 0; wave < 70; ++wave) {
+            Direction dir = Direction.values()[random.nextInt(Direction.values().length)];
+            game.reverseWave(1, 1, dir);
+            waves.add(0, dir);
+        }
+        Solution solution = new Solution() {
+            @Override
+            public Solver.Outcome getOutcome() {
+                return Solver.Outcome.SOLVED;
+            }
+
+            @Override
+            public List<Direction> getCellDirections(int x, int y) {
+                return x == 1 && y == 1 ? waves : Collections.emptyList();
+            }
+        };
+        assertTrue(TestBoards.solves(game, solution));
+        try (SolutionCache cache = new SolutionCache(file, 16)) {
+            cache.put(game, solution);
+            assertEquals(waves, cache.get(game).get().getCellDirections(1, 1));
+        }
+        try (SolutionCache cache = new SolutionCache(file, 16)) {
+            Optional<Solution> cached = cache.get(game);
+            assertTrue(cached.isPresent());
+            assertEquals(waves, cached.get().getCellDirections(1, 1));
+            assertTrue(TestBoards.solves(game, cached.get()));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        Path file = this.folder.newFile("other").toPath();
+        Files.writeString(file, "not a cache");
+        new SolutionCache(file, 16).close();
+    }
+}
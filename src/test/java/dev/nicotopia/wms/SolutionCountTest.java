@@ -0,0 +1,112 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import dev.nicotopia.wms.Game.Color;
+import dev.nicotopia.wms.Game.Direction;
+
+public class SolutionCountTest {
+    @Test
+    public void solvedBoardHasOnlyTheEmptySolution() {
+        Game game = new Game(3, 3);
+        for (int y = 0; y < 3; ++y) {
+            for (int x = 0; x < 3; ++x) {
+                game.setCell(x, y, game.getTargetColor(x, y), 0);
+            }
+        }
+        game.setCell(1, 1, game.getTargetColor(1, 1), 2);
+        Solver.SolutionCount count = new Solver(game).countSolutions();
+        assertEquals(1, count.count());
+        assertTrue(count.isUnique());
+    }
+
+    // Each 1 toggles itself and a neighbour, and the middle one can toggle the same pair as either outer one. The
+    // solved row has no waves or the middle 1 cancelling either outer one; a single wrong cell cannot be fixed.
+    @Test
+    public void rowOfOnesHasThreeSolutions() {
+        Game game = new Game(3, 1);
+        for (int x = 0; x < 3; ++x) {
+            game.setCell(x, 0, game.getTargetColor(x, 0), 1);
+        }
+        assertEquals(3, new Solver(game).countSolutions().count());
+        game.switchColor(0, 0);
+        game.switchColor(1, 0);
+        assertEquals(3, new Solver(game).countSolutions().count());
+        game.switchColor(1, 0);
+        assertEquals(0, new Solver(game).countSolutions().count());
+    }
+
+    @Test
+    public void countsMatchTheBruteForce() {
+        Random random = new Random(19);
+        for (int i = 0; i < 200; ++i) {
+            Game game = TestBoards.maybeUnsolvable(random, 2 + random.nextInt(4), 2 + random.nextInt(4),
+                    2 + random.nextInt(5), 3);
+            long expected = TestBoards.countSolutions(game);
+            for (Solver.Strategy strategy : Solver.Strategy.values()) {
+                Solver solver = new Solver(game);
+                solver.setStrategy(strategy);
+                Solver.SolutionCount count = solver.countSolutions();
+                assertEquals(expected, count.count());
+                assertTrue(count.exact());
+            }
+        }
+    }
+
+    @Test
+    public void streamedSolutionsAreDistinctAndComplete() {
+        Random random = new Random(20);
+        for (int i = 0; i < 100; ++i) {
+            Game game = TestBoards.random(random, 2 + random.nextInt(4), 2 + random.nextInt(4),
+                    2 + random.nextInt(4), 3);
+            List<Solution> solutions = new Solver(game).solutions().collect(Collectors.toList());
+            assertEquals(TestBoards.countSolutions(game), solutions.size());
+            assertEquals(solutions.size(),
+                    solutions.stream().map(solution -> describe(game, solution)).distinct().count());
+            for (Solution solution : solutions) {
+                assertTrue(TestBoards.solves(game, solution));
+            }
+        }
+    }
+
+    @Test
+    public void limitedCountsAreNotExact() {
+        Random random = new Random(21);
+        for (int i = 0; i < 200; ++i) {
+            Game game = TestBoards.random(random, 3 + random.nextInt(3), 3 + random.nextInt(3), 4, 3);
+            long expected = TestBoards.countSolutions(game);
+            if (2 < expected) {
+                Solver.SolutionCount count = new Solver(game).countSolutions(2);
+                assertEquals(2, count.count());
+                assertFalse(count.exact());
+                return;
+            }
+        }
+        throw new AssertionError("No board with more than two solutions");
+    }
+
+    // The cells each numbered cell toggles, which tell solutions apart.
+    private static String describe(Game game, Solution solution) {
+        StringBuilder sb = new StringBuilder();
+        for (int y = 0; y < game.getHeight(); ++y) {
+            for (int x = 0; x < game.getWidth(); ++x) {
+                if (game.getColor(x, y) != Color.NONE) {
+                    Game single = new Game(game);
+                    for (Direction dir : solution.getCellDirections(x, y)) {
+                        single.wave(x, y, dir);
+                    }
+                    sb.append(TestBoards.difference(game, single));
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import dev.nicotopia.wms.Game.Color;
+import dev.nicotopia.wms.Game.Direction;
+import dev.nicotopia.wms.Game.SplitType;
+
+public class SolverSessionTest {
+    // The 1 toggles itself and its neighbour until the neighbour becomes NONE, which its domain must then skip.
+    @Test
+    public void noneCellRebuildsTheDomainsPassingIt() {
+        Game game = new Game(3, 1);
+        for (int x = 0; x < 3; ++x) {
+            game.setCell(x, 0, game.getTargetColor(x, 0), 0);
+        }
+        game.reverseWave(0, 0, Direction.RIGHT);
+        try (SolverSession session = new SolverSession(game)) {
+            assertTrue(session.newSolver().solve());
+            game.setCell(1, 0, Color.NONE, 0);
+            Solver solver = session.newSolver();
+            assertTrue(solver.solve());
+            assertTrue(TestBoards.solves(game, solver));
+        }
+    }
+
+    @Test
+    public void editedGamesSolveLikeFreshOnes() {
+        Random random = new Random(24);
+        for (int i = 0; i < 150; ++i) {
+            int width = 3 + random.nextInt(4);
+            int height = 3 + random.nextInt(4);
+            Game game = TestBoards.random(random, width, height, 2 + random.nextInt(5), 3);
+            try (SolverSession session = new SolverSession(game)) {
+                for (int edit = 0; edit < 8; ++edit) {
+                    int x = random.nextInt(width);
+                    int y = random.nextInt(height);
+                    switch (random.nextInt(5)) {
+                        case 0 -> game.setCell(x, y, Color.NONE, 0);
+                        case 1 -> game.setCell(x, y, random.nextBoolean() ? Color.COLOR_0 : Color.COLOR_1,
+                                random.nextInt(3));
+                        case 2 -> game.switchColor(x, y);
+                        case 3 -> game.setSplitType(SplitType.values()[random.nextInt(SplitType.values().length)]);
+                        default -> {
+                            if (game.getColor(x, y) != Color.NONE && game.getNumber(x, y) != 0) {
+                                game.wave(x, y, Direction.values()[random.nextInt(Direction.values().length)]);
+                            }
+                        }
+                    }
+                    Solver.Strategy strategy = Solver.Strategy.values()[random.nextInt(2)];
+                    Solver fresh = new Solver(game);
+                    fresh.setStrategy(strategy);
+                    Solver solver = session.newSolver();
+                    solver.setStrategy(strategy);
+                    String name = "edit " + edit + " of board " + i;
+                    assertEquals(name, fresh.solve(), solver.solve());
+                    if (solver.getOutcome() == Solver.Outcome.SOLVED) {
+                        assertTrue(name, TestBoards.solves(game, solver));
+                    }
+                }
+            }
+        }
+    }
+}
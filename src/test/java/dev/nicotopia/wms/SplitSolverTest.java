@@ -0,0 +1,111 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import dev.nicotopia.wms.Game.Direction;
+import dev.nicotopia.wms.Game.SplitType;
+
+public class SplitSolverTest {
+    @Test
+    public void findsTheSolvableConfigurationsOfEverySplitType() {
+        Random random = new Random(25);
+        for (int i = 0; i < 40; ++i) {
+            Game game = TestBoards.random(random, 3 + random.nextInt(3), 3 + random.nextInt(3), 2 + random.nextInt(5),
+                    3);
+            Set<SplitType> splitTypes = random.nextBoolean() ? EnumSet.of(game.getSplitType())
+                    : EnumSet.allOf(SplitType.class);
+            assertMatchesEachConfiguration(game, splitTypes);
+        }
+    }
+
+    // A 33 is too large to enumerate, so every split position is solved on its own.
+    @Test
+    public void solvesConfigurationsOneByOneForLargeCells() {
+        Game game = new Game(34, 2);
+        game.setSplitType(SplitType.VERT);
+        game.setSplit(Direction.UP, 20);
+        for (int y = 0; y < game.getHeight(); ++y) {
+            for (int x = 0; x < game.getWidth(); ++x) {
+                game.setCell(x, y, game.getTargetColor(x, y), 0);
+            }
+        }
+        game.setCell(0, 0, game.getColor(0, 0), 30);
+        game.reverseWave(0, 0, Direction.RIGHT);
+        game.reverseWave(0, 0, Direction.DOWN);
+        game.reverseWave(0, 0, Direction.RIGHT);
+        assertEquals(33, game.getNumber(0, 0));
+        assertMatchesEachConfiguration(game, EnumSet.of(SplitType.VERT));
+    }
+
+    private static void assertMatchesEachConfiguration(Game game, Set<SplitType> splitTypes) {
+        SplitSolver splitSolver = new SplitSolver(game);
+        splitSolver.setSplitTypes(splitTypes);
+        List<SplitSolver.Result> results = splitSolver.solve();
+        Map<SplitSolver.Configuration, Solution> found = new HashMap<>();
+        for (SplitSolver.Result result : results) {
+            Game configured = new Game(game);
+            result.configuration().applyTo(configured);
+            assertTrue(TestBoards.solves(configured, result.solution()));
+            found.put(normalize(result.configuration()), result.solution());
+        }
+        Set<SplitSolver.Configuration> seen = new HashSet<>();
+        Set<SplitSolver.Configuration> solvable = new HashSet<>();
+        Game scratch = new Game(game);
+        for (SplitType splitType : splitTypes) {
+            scratch.setSplitType(splitType);
+            for (int left = 1; left < game.getHeight(); ++left) {
+                for (int up = 1; up < game.getWidth(); ++up) {
+                    for (int right = 1; right < game.getHeight(); ++right) {
+                        for (int down = 1; down < game.getWidth(); ++down) {
+                            scratch.setSplit(Direction.LEFT, left);
+                            scratch.setSplit(Direction.UP, up);
+                            scratch.setSplit(Direction.RIGHT, right);
+                            scratch.setSplit(Direction.DOWN, down);
+                            SplitSolver.Configuration configuration = normalize(new SplitSolver.Configuration(
+                                    splitType, scratch.getSplit(Direction.LEFT), scratch.getSplit(Direction.UP),
+                                    scratch.getSplit(Direction.RIGHT), scratch.getSplit(Direction.DOWN)));
+                            if (seen.add(configuration)) {
+                                if (new Solver(scratch).solve()) {
+                                    solvable.add(configuration);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(solvable, found.keySet());
+        assertEquals(results.isEmpty() ? Solver.Outcome.UNSOLVABLE : Solver.Outcome.SOLVED, splitSolver.getOutcome());
+    }
+
+    // Sides a split type ignores are left out, so configurations differing only there compare equal.
+    private static SplitSolver.Configuration normalize(SplitSolver.Configuration configuration) {
+        Set<Direction> used = switch (configuration.splitType()) {
+            case NONE -> EnumSet.noneOf(Direction.class);
+            case HOR -> EnumSet.of(Direction.LEFT);
+            case VERT -> EnumSet.of(Direction.UP);
+            case HOR_AND_VERT -> EnumSet.of(Direction.LEFT, Direction.UP, Direction.DOWN);
+            case VERT_AND_HOR -> EnumSet.of(Direction.UP, Direction.LEFT, Direction.RIGHT);
+            case TOP_LEFT -> EnumSet.of(Direction.UP, Direction.LEFT);
+            case TOP_RIGHT -> EnumSet.of(Direction.UP, Direction.RIGHT);
+            case BOTTOM_LEFT -> EnumSet.of(Direction.DOWN, Direction.LEFT);
+            case BOTTOM_RIGHT -> EnumSet.of(Direction.DOWN, Direction.RIGHT);
+        };
+        return new SplitSolver.Configuration(configuration.splitType(),
+                used.contains(Direction.LEFT) ? configuration.left() : 0,
+                used.contains(Direction.UP) ? configuration.up() : 0,
+                used.contains(Direction.RIGHT) ? configuration.right() : 0,
+                used.contains(Direction.DOWN) ? configuration.down() : 0);
+    }
+}
@@ -0,0 +1,141 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Test;
+
+import dev.nicotopia.wms.Game.Direction;
+import dev.nicotopia.wms.Game.SplitType;
+
+public class SymmetryTest {
+    @Test
+    public void inverseUndoesEverySymmetry() {
+        for (Symmetry symmetry : Symmetry.values()) {
+            int width = symmetry.getWidth(5, 3);
+            int height = symmetry.getHeight(5, 3);
+            for (int y = 0; y < 3; ++y) {
+                for (int x = 0; x < 5; ++x) {
+                    int x1 = symmetry.getX(x, y, 5, 3);
+                    int y1 = symmetry.getY(x, y, 5, 3);
+                    assertEquals(x, symmetry.inverse().getX(x1, y1, width, height));
+                    assertEquals(y, symmetry.inverse().getY(x1, y1, width, height));
+                }
+            }
+            for (Direction dir : Direction.values()) {
+                assertEquals(dir, symmetry.inverse().getDirection(symmetry.getDirection(dir)));
+            }
+        }
+    }
+
+    @Test
+    public void mirrorImagesShareTheirCanonicalForm() {
+        Random random = new Random(15);
+        for (int i = 0; i < 100; ++i) {
+            Game game = unsplit(TestBoards.random(random, 2 + random.nextInt(5), 2 + random.nextInt(5), 4, 3));
+            int expected[] = canonicalKeys(game);
+            for (Symmetry symmetry : Symmetry.values()) {
+                assertArrayEquals(symmetry.toString(), expected, canonicalKeys(transform(game, symmetry)));
+            }
+        }
+    }
+
+    @Test
+    public void solutionsMapBackToEachOrientation() {
+        Random random = new Random(16);
+        SolutionCache cache = new SolutionCache(64);
+        for (int i = 0; i < 60; ++i) {
+            Game game = unsplit(TestBoards.random(random, 2 + random.nextInt(5), 2 + random.nextInt(5), 4, 3));
+            Solver original = new Solver(game);
+            boolean solvable = original.solve();
+            cache.put(game, original);
+            for (Symmetry symmetry : Symmetry.values()) {
+                Game transformed = transform(game, symmetry);
+                Solver solver = new Solver(transformed);
+                assertEquals(solvable, solver.solve());
+                Optional<Solution> cached = cache.get(transformed);
+                assertTrue(cached.isPresent());
+                if (solvable) {
+                    assertTrue(TestBoards.solves(transformed, solver));
+                    assertTrue(TestBoards.solves(transformed, cached.get()));
+                }
+            }
+        }
+    }
+
+    // The centre cell of a board with all eight symmetries has entries that are mirror images of each other, of which
+    // only one needs to be tried.
+    @Test
+    public void depthFirstSearchSkipsSymmetricEntries() {
+        for (int parallelism : new int[] { 1, 3 }) {
+            Solver plain = new Solver(symmetricBoard());
+            plain.setStrategy(Solver.Strategy.DEPTH_FIRST);
+            plain.setParallelism(parallelism);
+            plain.setSymmetryBreaking(false);
+            Solver breaking = new Solver(symmetricBoard());
+            breaking.setStrategy(Solver.Strategy.DEPTH_FIRST);
+            breaking.setParallelism(parallelism);
+            breaking.setSplitDepth(1);
+            assertEquals(plain.solve(), breaking.solve());
+            assertEquals(plain.getOutcome(), breaking.getOutcome());
+            assertEquals(0, plain.getStatistics().symmetricEntries());
+            assertTrue(0 < breaking.getStatistics().symmetricEntries());
+        }
+    }
+
+    private static Game symmetricBoard() {
+        Game game = unsplit(new Game(5, 5));
+        for (int y = 0; y < 5; ++y) {
+            for (int x = 0; x < 5; ++x) {
+                game.setCell(x, y, game.getTargetColor(x, y), 0);
+            }
+        }
+        game.setCell(2, 2, game.getTargetColor(2, 2), 2);
+        game.switchColor(1, 2);
+        game.switchColor(3, 2);
+        game.switchColor(2, 1);
+        game.switchColor(2, 3);
+        return game;
+    }
+
+    // Without splits every target color is the same, so the target survives any symmetry.
+    private static Game unsplit(Game game) {
+        game.setSplitType(SplitType.NONE);
+        return game;
+    }
+
+    private static Game transform(Game game, Symmetry symmetry) {
+        int width = game.getWidth();
+        int height = game.getHeight();
+        Game transformed = new Game(symmetry.getWidth(width, height), symmetry.getHeight(width, height));
+        if (transformed.getTopLeftBorderColor() != game.getTopLeftBorderColor()) {
+            transformed.switchTopLeftBorderColor();
+        }
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                transformed.setCell(symmetry.getX(x, y, width, height), symmetry.getY(x, y, width, height),
+                        game.getColor(x, y), game.getNumber(x, y));
+            }
+        }
+        return transformed;
+    }
+
+    private static int[] canonicalKeys(Game game) {
+        Symmetry symmetry = Symmetry.canonical(game);
+        int width = symmetry.getWidth(game.getWidth(), game.getHeight());
+        int height = symmetry.getHeight(game.getWidth(), game.getHeight());
+        int keys[] = new int[width * height + 1];
+        keys[0] = width;
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                keys[1 + y * width + x] = Symmetry.cellKey(game, symmetry.inverse().getX(x, y, width, height),
+                        symmetry.inverse().getY(x, y, width, height));
+            }
+        }
+        return keys;
+    }
+}
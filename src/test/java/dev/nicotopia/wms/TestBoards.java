@@ -0,0 +1,179 @@
+package dev.nicotopia.wms;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import dev.nicotopia.wms.Game.Color;
+import dev.nicotopia.wms.Game.Direction;
+import dev.nicotopia.wms.Game.SplitType;
+
+// Random boards and a brute force over every wave sequence of every cell, built on Game alone.
+final class TestBoards {
+    private TestBoards() {
+    }
+
+    // A solvable board: a solved one with some NONE cells, whose numbered cells then send waves backwards.
+    static Game random(Random random, int width, int height, int numbers, int maxNumber) {
+        Game game = new Game(width, height);
+        game.setSplitType(SplitType.values()[random.nextInt(SplitType.values().length)]);
+        for (Direction dir : Direction.values()) {
+            game.setSplit(dir, 1 + random.nextInt(Math.min(width, height) - 1));
+        }
+        if (random.nextBoolean()) {
+            game.switchTopLeftBorderColor();
+        }
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                game.setCell(x, y, random.nextInt(12) == 0 ? Color.NONE : game.getTargetColor(x, y), 0);
+            }
+        }
+        for (int i = 0; i < numbers; ++i) {
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            if (game.getColor(x, y) != Color.NONE && game.getNumber(x, y) == 0) {
+                for (int wave = 1 + random.nextInt(maxNumber); 0 < wave; --wave) {
+                    game.reverseWave(x, y, Direction.values()[random.nextInt(Direction.values().length)]);
+                }
+            }
+        }
+        return game;
+    }
+
+    // A random board that is solvable only about half the time, one of its non-NONE cells having switched color.
+    static Game maybeUnsolvable(Random random, int width, int height, int numbers, int maxNumber) {
+        Game game = random(random, width, height, numbers, maxNumber);
+        int x = random.nextInt(width);
+        int y = random.nextInt(height);
+        if (random.nextBoolean() && game.getColor(x, y) != Color.NONE) {
+            game.switchColor(x, y);
+        }
+        return game;
+    }
+
+    // Whether sending the waves of solution solves game, leaving game itself unchanged.
+    static boolean solves(Game game, Solution solution) {
+        Game copy = new Game(game);
+        return copy.applySolution(solution) && copy.isSolved();
+    }
+
+    static int countWaves(Game game, Solution solution) {
+        int count = 0;
+        for (int y = 0; y < game.getHeight(); ++y) {
+            for (int x = 0; x < game.getWidth(); ++x) {
+                count += solution.getCellDirections(x, y).size();
+            }
+        }
+        return count;
+    }
+
+    static int countUsedNumbers(Game game, Solution solution) {
+        int count = 0;
+        for (int y = 0; y < game.getHeight(); ++y) {
+            for (int x = 0; x < game.getWidth(); ++x) {
+                count += solution.getCellDirections(x, y).isEmpty() ? 0 : 1;
+            }
+        }
+        return count;
+    }
+
+    // The cells each numbered cell can toggle, one map per cell from its distinct patterns to their fewest waves.
+    static List<Map<BitSet, Integer>> patterns(Game game) {
+        List<Map<BitSet, Integer>> patterns = new ArrayList<>();
+        for (int y = 0; y < game.getHeight(); ++y) {
+            for (int x = 0; x < game.getWidth(); ++x) {
+                if (game.getColor(x, y) != Color.NONE && game.getNumber(x, y) != 0) {
+                    Map<BitSet, Integer> cellPatterns = new HashMap<>();
+                    collectPatterns(game, new Game(game), x, y, 0, cellPatterns);
+                    patterns.add(cellPatterns);
+                }
+            }
+        }
+        return patterns;
+    }
+
+    private static void collectPatterns(Game game, Game scratch, int x, int y, int waves,
+            Map<BitSet, Integer> patterns) {
+        patterns.merge(difference(game, scratch), waves, Math::min);
+        if (scratch.getNumber(x, y) != 0) {
+            for (Direction dir : Direction.values()) {
+                Game next = new Game(scratch);
+                if (next.wave(x, y, dir)) {
+                    collectPatterns(game, next, x, y, waves + 1, patterns);
+                }
+            }
+        }
+    }
+
+    static BitSet difference(Game game, Game other) {
+        BitSet cells = new BitSet();
+        for (int y = 0; y < game.getHeight(); ++y) {
+            for (int x = 0; x < game.getWidth(); ++x) {
+                if (game.getColor(x, y) != other.getColor(x, y)) {
+                    cells.set(y * game.getWidth() + x);
+                }
+            }
+        }
+        return cells;
+    }
+
+    static BitSet wrongCells(Game game) {
+        BitSet cells = new BitSet();
+        for (int y = 0; y < game.getHeight(); ++y) {
+            for (int x = 0; x < game.getWidth(); ++x) {
+                if (!game.isCellCorrect(x, y)) {
+                    cells.set(y * game.getWidth() + x);
+                }
+            }
+        }
+        return cells;
+    }
+
+    // The number of distinct solutions, telling solutions apart by the cells each numbered cell toggles.
+    static long countSolutions(Game game) {
+        return countSolutions(patterns(game), 0, wrongCells(game));
+    }
+
+    private static long countSolutions(List<Map<BitSet, Integer>> patterns, int index, BitSet wrong) {
+        if (index == patterns.size()) {
+            return wrong.isEmpty() ? 1 : 0;
+        }
+        long count = 0;
+        for (BitSet pattern : patterns.get(index).keySet()) {
+            BitSet next = (BitSet) wrong.clone();
+            next.xor(pattern);
+            count += countSolutions(patterns, index + 1, next);
+        }
+        return count;
+    }
+
+    // The least cost of a solution under objective, -1 if there is none.
+    static int leastCost(Game game, Solver.Objective objective) {
+        return leastCost(patterns(game), 0, wrongCells(game), objective);
+    }
+
+    private static int leastCost(List<Map<BitSet, Integer>> patterns, int index, BitSet wrong,
+            Solver.Objective objective) {
+        if (index == patterns.size()) {
+            return wrong.isEmpty() ? 0 : -1;
+        }
+        int least = -1;
+        for (Map.Entry<BitSet, Integer> pattern : patterns.get(index).entrySet()) {
+            BitSet next = (BitSet) wrong.clone();
+            next.xor(pattern.getKey());
+            int rest = leastCost(patterns, index + 1, next, objective);
+            if (rest != -1) {
+                int cost = rest + switch (objective) {
+                    case ANY -> 0;
+                    case FEWEST_WAVES -> pattern.getValue();
+                    case FEWEST_USED_NUMBERS -> pattern.getValue() == 0 ? 0 : 1;
+                };
+                least = least == -1 ? cost : Math.min(least, cost);
+            }
+        }
+        return least;
+    }
+}
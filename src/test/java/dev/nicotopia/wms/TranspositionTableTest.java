@@ -0,0 +1,57 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TranspositionTableTest {
+    @Test
+    public void keepsBoundsPerHash() {
+        TranspositionTable table = new TranspositionTable(1 << 16, TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED);
+        Random random = new Random(8);
+        long hashes[] = new long[100];
+        for (int i = 0; i < hashes.length; ++i) {
+            hashes[i] = random.nextLong();
+            table.add(hashes[i], 1, i);
+        }
+        for (int i = 0; i < hashes.length; ++i) {
+            assertEquals(i, table.getBound(hashes[i]));
+        }
+        table.add(hashes[5], 1);
+        assertTrue(table.contains(hashes[5]));
+        assertFalse(table.contains(hashes[6]));
+        table.clear();
+        assertEquals(0, table.getBound(hashes[7]));
+    }
+
+    // Hashes differing only in the bits that select the slot, or only in those above them, must not match.
+    @Test
+    public void tellsApartHashesSharingBits() {
+        TranspositionTable table = new TranspositionTable(1 << 16, TranspositionTable.ReplacementPolicy.ALWAYS);
+        table.add(0x1234_0000_0000_0001L, 1);
+        assertFalse(table.contains(0x1234_0000_0000_0002L));
+        assertFalse(table.contains(0x4321_0000_0000_0001L));
+        assertFalse(table.contains(0x1234_0000_0001_0001L));
+        table.add(0, 1, 3);
+        assertEquals(3, table.getBound(0));
+        assertEquals(0, table.getBound(1));
+        assertTrue(table.contains(0x1234_0000_0000_0001L));
+    }
+
+    @Test
+    public void keepExistingNeverReplaces() {
+        TranspositionTable table = new TranspositionTable(0, TranspositionTable.ReplacementPolicy.KEEP_EXISTING);
+        for (int i = 0; i < table.getCapacity(); ++i) {
+            table.add(i, 1);
+        }
+        table.add(table.getCapacity(), 100);
+        assertFalse(table.contains(table.getCapacity()));
+        for (int i = 0; i < table.getCapacity(); ++i) {
+            assertTrue(table.contains(i));
+        }
+    }
+}
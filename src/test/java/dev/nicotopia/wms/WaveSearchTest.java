@@ -0,0 +1,93 @@
+package dev.nicotopia.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import dev.nicotopia.wms.Game.Color;
+import dev.nicotopia.wms.Game.Direction;
+
+public class WaveSearchTest {
+    @Test
+    public void solvesBoardsWithCellsTooLargeToEnumerate() {
+        Random random = new Random(4);
+        for (int i = 0; i < 5; ++i) {
+            Game game = new Game(25, 20);
+            for (int y = 0; y < game.getHeight(); ++y) {
+                for (int x = 0; x < game.getWidth(); ++x) {
+                    game.setCell(x, y, game.getTargetColor(x, y), 0);
+                }
+            }
+            game.setCell(3, 3, game.getColor(3, 3), 12);
+            for (int wave = 0; wave < 10; ++wave) {
+                game.reverseWave(12, 10, Direction.values()[random.nextInt(Direction.values().length)]);
+            }
+            Solver solver = new Solver(game);
+            assertTrue(solver.solve());
+            assertEquals(Solver.Outcome.SOLVED, solver.getOutcome());
+            assertTrue(TestBoards.solves(game, solver));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void countingNeedsEveryDomain() {
+        Game game = new Game(40, 1);
+        game.setCell(20, 0, Color.COLOR_0, 33);
+        new Solver(game).countSolutions();
+    }
+
+    // Cells left without a domain on purpose must not change which boards are solvable or what they cost.
+    @Test
+    public void singleWavesFindTheLeastCost() {
+        Random random = new Random(5);
+        for (int i = 0; i < 150; ++i) {
+            Game game = TestBoards.random(random, 3 + random.nextInt(3), 3 + random.nextInt(3), 2 + random.nextInt(4),
+                    3);
+            for (Solver.Objective objective : Solver.Objective.values()) {
+                GameState state = new GameState(game);
+                CellDomain domains[] = new CellDomain[state.getCellCount()];
+                for (int cell = state.nextWaveable(0); cell != -1; cell = state.nextWaveable(cell + 1)) {
+                    domains[cell] = random.nextBoolean() ? new CellDomain(state, cell) : null;
+                }
+                WaveSearch search = new WaveSearch(new GameState(state), domains,
+                        new TranspositionTable(1 << 16, TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED),
+                        new SolveControl(0, 0, null, 0));
+                boolean solved = objective == Solver.Objective.ANY ? search.solve() : search.solveMinimal(objective);
+                int leastCost = TestBoards.leastCost(game, objective);
+                assertEquals(leastCost != -1, solved);
+                if (solved) {
+                    Game copy = new Game(game);
+                    int waves = 0;
+                    int usedNumbers = 0;
+                    for (int cell = 0; cell < domains.length; ++cell) {
+                        int x = cell % game.getWidth();
+                        int y = cell / game.getWidth();
+                        int cellWaves = 0;
+                        if (search.getChoices()[cell] != -1) {
+                            for (Direction dir : domains[cell].getDirections(search.getChoices()[cell])) {
+                                assertTrue(copy.wave(x, y, dir));
+                                ++cellWaves;
+                            }
+                        } else if (search.getWaves()[cell] != null) {
+                            for (Direction dir : search.getWaves()[cell]) {
+                                assertTrue(copy.wave(x, y, dir));
+                                ++cellWaves;
+                            }
+                        }
+                        waves += cellWaves;
+                        usedNumbers += cellWaves == 0 ? 0 : 1;
+                    }
+                    assertTrue(copy.isSolved());
+                    if (objective == Solver.Objective.FEWEST_WAVES) {
+                        assertEquals(leastCost, waves);
+                    } else if (objective == Solver.Objective.FEWEST_USED_NUMBERS) {
+                        assertEquals(leastCost, usedNumbers);
+                    }
+                }
+            }
+        }
+    }
+}